@@ -0,0 +1,23 @@
+package engine;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Entry point of benchmarks.jar: the usual JMH command line, always with the GC profiler on so
+// every result comes with its allocation rate and bytes per operation
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        System.setProperty("java.awt.headless", "true");
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Djava.awt.headless=true")
+                .build()).run();
+    }
+}
@@ -0,0 +1,45 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The per-frame clear of the color and depth buffers
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClearBenchmark
+{
+    // Width and height of the square screen
+    @Param({"500", "1000"})
+    public int size;
+
+    private FrameBuffer frame;
+    private DepthBuffer depth;
+
+    @Setup
+    public void setup()
+    {
+        this.frame = new FrameBuffer(this.size, this.size);
+        this.depth = new DepthBuffer(this.size, this.size);
+    }
+
+    @Benchmark
+    public void clearBuffers()
+    {
+        this.frame.clear(0x000000);
+        this.depth.clear();
+    }
+}
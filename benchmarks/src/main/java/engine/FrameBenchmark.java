@@ -0,0 +1,61 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One whole frame as Main renders it: clear, spin the grid, cull, transform, set up and
+// rasterize, seen from Main's starting camera, lit as triangles are set up or through a
+// visibility buffer
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameBenchmark
+{
+    @Param({"100", "10000", "100000"})
+    public int cubes;
+    @Param({"false", "true"})
+    public boolean visibility;
+
+    private GridScene scene;
+    private Renderer renderer;
+    private FrameBuffer frame;
+    private DepthBuffer depth;
+    private Camera camera;
+    private double angle;
+
+    @Setup
+    public void setup()
+    {
+        this.scene = new GridScene(this.cubes);
+        this.renderer = new Renderer();
+        this.renderer.setVisibilityBuffer(this.visibility);
+        this.frame = new FrameBuffer(500, 500);
+        this.depth = new DepthBuffer(500, 500);
+        this.camera = new Camera(90, 1, 0.01, 500);
+        this.camera.setPosition(0, 0, 10);
+    }
+
+    @Benchmark
+    public FrameBuffer frame()
+    {
+        this.frame.clear(0x000000);
+        this.depth.clear();
+        this.angle += Math.toRadians(3);
+        this.scene.animate(this.angle);
+        this.scene.draw(this.renderer, this.frame, this.depth, this.camera, 500, 250);
+        return this.frame;
+    }
+}
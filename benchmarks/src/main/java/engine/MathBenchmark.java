@@ -0,0 +1,93 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Matrix products, rotation and view matrix construction, the allocating Matrix versions next
+// to the Mat4 ones that replaced them on the render path
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark
+{
+    private Matrix matrixA;
+    private Matrix matrixB;
+    private Matrix point;
+    private final Mat4 mat4A = new Mat4();
+    private final Mat4 mat4B = new Mat4();
+    private final Mat4 mat4Out = new Mat4();
+    private final Vec4 vec4Out = new Vec4();
+    private Camera camera;
+    private double angle;
+
+    @Setup
+    public void setup()
+    {
+        this.matrixA = Mat.matrixMul(Matrix.rotateY(30), Matrix.transform(1, 2, 3));
+        this.matrixB = Mat.matrixMul(Matrix.rotateX(20), Matrix.scale(2, 2, 2));
+        this.point = Matrix.point3D(1, 2, 3);
+        this.mat4A.set(this.matrixA);
+        this.mat4B.set(this.matrixB);
+        this.camera = new Camera(90, 1, 0.01, 500);
+    }
+
+    @Benchmark
+    public Matrix matrixMul4x4()
+    {
+        return Mat.matrixMul(this.matrixA, this.matrixB);
+    }
+    @Benchmark
+    public Matrix matrixMul4x1()
+    {
+        return Mat.matrixMul(this.matrixA, this.point);
+    }
+    @Benchmark
+    public Mat4 mat4MulInto()
+    {
+        return Mat4.mulInto(this.mat4Out, this.mat4A, this.mat4B);
+    }
+    @Benchmark
+    public Vec4 mat4TransformPoint()
+    {
+        return Mat4.transformPoint(this.vec4Out, this.mat4A, 1, 2, 3);
+    }
+
+    @Benchmark
+    public Matrix matrixRotateY()
+    {
+        this.angle += 1;
+        return Matrix.rotateY(this.angle);
+    }
+    @Benchmark
+    public Mat4 mat4SetRotateY()
+    {
+        this.angle += 1;
+        return this.mat4Out.setRotateY(this.angle);
+    }
+
+    // The camera did not move, so this is the cached matrix
+    @Benchmark
+    public Mat4 viewMatrixCached()
+    {
+        return this.camera.getViewMatrix();
+    }
+    // Moving the camera first forces the view to be rebuilt
+    @Benchmark
+    public Mat4 viewMatrixRebuilt()
+    {
+        this.camera.moveForward(0);
+        return this.camera.getViewMatrix();
+    }
+}
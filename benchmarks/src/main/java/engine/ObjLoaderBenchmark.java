@@ -0,0 +1,72 @@
+package engine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Load time of a generated OBJ height field. The GC profiler's gc.alloc.rate.norm is the heap
+// one load allocates, which bounds how far it raises the peak.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ObjLoaderBenchmark
+{
+    @Param({"10000", "1000000"})
+    public int triangles;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        // n x n vertices give 2 (n - 1)^2 triangles
+        int n = (int) Math.ceil(Math.sqrt(this.triangles / 2.0)) + 1;
+        this.file = Files.createTempFile("grid", ".obj");
+        try(BufferedWriter out = Files.newBufferedWriter(this.file))
+        {
+            for(int y = 0; y < n; y++)
+            {
+                for(int x = 0; x < n; x++)
+                {
+                    out.write("v " + x * 0.01 + " " + Math.sin(x * 0.1) * Math.cos(y * 0.1) + " " + y * 0.01 + "\n");
+                }
+            }
+            for(int y = 0; y < n - 1; y++)
+            {
+                for(int x = 0; x < n - 1; x++)
+                {
+                    int i = y * n + x + 1;
+                    out.write("f " + i + " " + (i + 1) + " " + (i + n + 1) + " " + (i + n) + "\n");
+                }
+            }
+        }
+    }
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(this.file);
+    }
+
+    @Benchmark
+    public Mesh load() throws IOException
+    {
+        return ObjLoader.load(this.file);
+    }
+}
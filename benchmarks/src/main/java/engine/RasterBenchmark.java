@@ -0,0 +1,70 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Triangle fill on a 500 x 500 target. Every call draws a little nearer than the one before, so
+// the depth test passes each time and the fill is measured rather than the occlusion reject.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasterBenchmark
+{
+    private static final int SIZE = 500;
+
+    // Triangle legs in pixels: small, medium and one covering half the screen
+    @Param({"8", "64", "500"})
+    public int triangle;
+
+    private FrameBuffer frame;
+    private DepthBuffer depth;
+    private Rasterizer rasterizer;
+    private double z;
+
+    @Setup
+    public void setup()
+    {
+        this.frame = new FrameBuffer(SIZE, SIZE);
+        this.depth = new DepthBuffer(SIZE, SIZE);
+        this.rasterizer = new Rasterizer(this.frame, this.depth);
+        this.rasterizer.setColor(0xffffff);
+    }
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+        this.depth.clear();
+        this.z = 0;
+    }
+    private double nearer()
+    {
+        // Far enough apart to stay distinct as floats and to clear the occlusion epsilon
+        this.z -= 1;
+        if(this.z < -1e6)
+        {
+            reset();
+        }
+        return this.z;
+    }
+
+    @Benchmark
+    public void fillTriangle()
+    {
+        double z = nearer();
+        double o = (SIZE - this.triangle) / 2.0;
+        this.rasterizer.fillTriangle(o, o, z, o + this.triangle, o, z, o, o + this.triangle, z);
+    }
+}
@@ -0,0 +1,120 @@
+package engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Scalar against Vector API loops. Both forks get the incubator module, and the scalar one turns
+// Simd off, so each pair differs only in which loop runs: the vertex transform and projection of
+// a large vertex buffer, and the fill of triangles as in RasterBenchmark.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SimdBenchmark
+{
+    private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+    private static final String SCALAR = "-Dengine.simd=false";
+
+    @State(Scope.Thread)
+    public static class Vertices
+    {
+        @Param({"100000"})
+        public int vertices;
+
+        final VertexBuffer src = new VertexBuffer(16);
+        ClipBuffer clip;
+        final Mat4 mvp = new Mat4();
+        Camera camera;
+
+        @Setup
+        public void setup()
+        {
+            Random random = new Random(1);
+            for(int i = 0; i < this.vertices; i++)
+            {
+                this.src.add(random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5);
+            }
+            this.clip = new ClipBuffer(this.vertices);
+            this.clip.size = this.vertices;
+            this.camera = new Camera(90, 1, 0.01, 500);
+            this.camera.setPosition(0, 0, 20);
+            Mat4.mulInto(this.mvp, this.camera.getViewProjection(), new Mat4().setTransform(0, 0, 0));
+        }
+        ClipBuffer transform()
+        {
+            this.clip.transform(this.src, this.mvp, 0);
+            this.clip.project(this.camera, 500, 250, 0, this.vertices);
+            return this.clip;
+        }
+    }
+
+    // As in RasterBenchmark: every fill is a little nearer than the last, so all of it is written
+    @State(Scope.Thread)
+    public static class Target
+    {
+        private static final int SIZE = 500;
+
+        @Param({"8", "64", "500"})
+        public int triangle;
+
+        final FrameBuffer frame = new FrameBuffer(SIZE, SIZE);
+        final DepthBuffer depth = new DepthBuffer(SIZE, SIZE);
+        final Rasterizer rasterizer = new Rasterizer(this.frame, this.depth);
+        double z;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            this.depth.clear();
+            this.z = 0;
+        }
+        void fill()
+        {
+            this.z -= 1;
+            if(this.z < -1e6)
+            {
+                reset();
+            }
+            double o = (SIZE - this.triangle) / 2.0;
+            this.rasterizer.fillTriangle(o, o, this.z, o + this.triangle, o, this.z, o, o + this.triangle, this.z);
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR, SCALAR})
+    public ClipBuffer transformScalar(Vertices vertices)
+    {
+        return vertices.transform();
+    }
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public ClipBuffer transformVector(Vertices vertices)
+    {
+        return vertices.transform();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR, SCALAR})
+    public void fillScalar(Target target)
+    {
+        target.fill();
+    }
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public void fillVector(Target target)
+    {
+        target.fill();
+    }
+}
@@ -0,0 +1,61 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Vertex transform: one cube on its own, and every cube of a grid scene batched by the renderer
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark
+{
+    @Param({"100", "10000", "100000"})
+    public int cubes;
+
+    private final Cube cube = new Cube();
+    private GridScene scene;
+    private Renderer renderer;
+    private Camera camera;
+    private int[] all;
+
+    @Setup
+    public void setup()
+    {
+        this.camera = new Camera(90, 1, 0.01, 500);
+        this.camera.setPosition(0, 0, 10);
+        this.cube.transform(new Mat4().setTransform(0, 3, 20));
+        this.scene = new GridScene(this.cubes);
+        this.scene.animate(Math.toRadians(3));
+        this.renderer = new Renderer();
+        this.all = new int[this.cubes];
+        for(int i = 0; i < this.cubes; i++)
+        {
+            this.all[i] = i;
+        }
+    }
+
+    @Benchmark
+    public ClipBuffer cubeTransformedVertices()
+    {
+        return this.cube.transformedVertices(this.camera);
+    }
+    // Transform and projection of the whole scene, with nothing culled
+    @Benchmark
+    public ClipBuffer transformScene()
+    {
+        return this.renderer.transformScene(Mesh.CUBE, this.scene.cubes, this.all, this.cubes, this.camera, 500, 250);
+    }
+}
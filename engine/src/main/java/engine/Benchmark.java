@@ -0,0 +1,251 @@
+package engine;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+// Headless benchmark: renders the grid scene into an in-memory frame buffer along a scripted
+// camera path, with no display, and prints frame time percentiles, triangle throughput and
+// allocation rate for every scene size. With --obj the grid holds copies of a mesh loaded from
+// an OBJ file instead of cubes, and the load time, heap growth and the triangles of each level
+// of detail are reported first. The file is loaded through its MeshCache, so the first run
+// parses it and later ones read the cache; the levels of detail are always built afresh.
+// --mode draws the frames filled and lit as triangles are set up, through a visibility buffer,
+// or as a wireframe of each object's edges without the diagonals of flat faces.
+//
+//   java -cp engine/target/classes engine.Benchmark [--cubes 100,10000,100000] [--frames 300]
+//       [--warmup 100] [--size 500] [--obj <file>] [--dump <dir>] [--dump-frames 0,150] [--format png|ppm]
+//       [--mode filled|visibility|wireframe]
+public class Benchmark
+{
+    private int[] sizes = {100, 10000, 100000};
+    private int frames = 300;
+    private int warmup = 100;
+    private int size = 500;
+    private File dumpDir;
+    private int[] dumpFrames = {0};
+    private String format = "png";
+    private String mode = "filled";
+    private LodMesh lods;
+
+    public static void main(String[] args) throws IOException
+    {
+        System.setProperty("java.awt.headless", "true");
+        Benchmark benchmark = new Benchmark();
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            String value = args[i + 1];
+            switch(args[i])
+            {
+                case "--cubes":
+                    benchmark.sizes = parseList(value);
+                    break;
+                case "--frames":
+                    benchmark.frames = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    benchmark.warmup = Integer.parseInt(value);
+                    break;
+                case "--size":
+                    benchmark.size = Integer.parseInt(value);
+                    break;
+                case "--dump":
+                    benchmark.dumpDir = new File(value);
+                    break;
+                case "--dump-frames":
+                    benchmark.dumpFrames = parseList(value);
+                    break;
+                case "--format":
+                    benchmark.format = value;
+                    break;
+                case "--mode":
+                    if(!value.equals("filled") && !value.equals("visibility") && !value.equals("wireframe"))
+                    {
+                        throw new IllegalArgumentException("Unknown mode " + value);
+                    }
+                    benchmark.mode = value;
+                    break;
+                case "--obj":
+                    benchmark.lods = load(Path.of(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if(benchmark.dumpDir != null)
+        {
+            benchmark.dumpDir.mkdirs();
+        }
+
+        System.out.printf("%9s %7s %8s %8s %8s %10s %10s %10s %12s%n", "cubes", "frames", "p50 ms", "p95 ms",
+                "p99 ms", "tris/frame", "Mtris/s", "alloc MB/s", "alloc B/frame");
+        for(int cubes : benchmark.sizes)
+        {
+            benchmark.run(cubes);
+        }
+        System.exit(0);
+    }
+    private static LodMesh load(Path path) throws IOException
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heap = memory.getHeapMemoryUsage().getUsed();
+        long start = System.nanoTime();
+        Mesh mesh = MeshCache.load(path);
+        double millis = (System.nanoTime() - start) / 1e6;
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if(pool.getType() == MemoryType.HEAP)
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.gc();
+        long retained = memory.getHeapMemoryUsage().getUsed() - heap;
+        System.out.printf("%s: %d vertices, %d triangles, loaded in %.1f ms, %.1f MB retained, %.1f MB peak heap%n",
+                path, mesh.vertices.size, mesh.triangleCount, millis, retained / 1048576.0, peak / 1048576.0);
+
+        start = System.nanoTime();
+        LodMesh lods = LodMesh.build(mesh);
+        millis = (System.nanoTime() - start) / 1e6;
+        StringBuilder levels = new StringBuilder();
+        for(Mesh level : lods.levels)
+        {
+            levels.append(levels.length() == 0 ? "" : ", ").append(level.triangleCount);
+        }
+        System.out.printf("%d levels of detail built in %.1f ms: %s triangles%n", lods.levels.length, millis, levels);
+        return lods;
+    }
+    private static int[] parseList(String value)
+    {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private void run(int cubes) throws IOException
+    {
+        GridScene scene = this.lods == null ? new GridScene(cubes) : new GridScene(this.lods, cubes);
+        Renderer renderer = new Renderer();
+        renderer.setVisibilityBuffer(this.mode.equals("visibility"));
+        renderer.setWireframe(this.mode.equals("wireframe"), false);
+        FrameBuffer frame = new FrameBuffer(this.size, this.size);
+        DepthBuffer depth = new DepthBuffer(this.size, this.size);
+        double scale = this.size;
+        int center = this.size / 2;
+
+        Camera camera = new Camera(90, 1, 0.01, 500);
+        for(int f = 0; f < this.warmup; f++)
+        {
+            step(camera, scene, f, this.warmup);
+            render(renderer, scene, frame, depth, camera, scale, center, f);
+        }
+
+        camera = new Camera(90, 1, 0.01, 500);
+        long[] times = new long[this.frames];
+        long triangles = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for(int f = 0; f < this.frames; f++)
+        {
+            long t0 = System.nanoTime();
+            step(camera, scene, f, this.frames);
+            render(renderer, scene, frame, depth, camera, scale, center, f);
+            times[f] = System.nanoTime() - t0;
+            triangles += renderer.getTriangleCount();
+
+            if(this.dumpDir != null && isDumped(f))
+            {
+                dump(frame, new File(this.dumpDir, "cubes" + cubes + "_frame" + f + "." + this.format));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        allocated = allocatedBytes() - allocated;
+
+        Arrays.sort(times);
+        System.out.printf("%9d %7d %8.2f %8.2f %8.2f %10d %10.2f %10.2f %12d%n", cubes, this.frames,
+                percentile(times, 50), percentile(times, 95), percentile(times, 99),
+                triangles / this.frames, triangles / seconds / 1e6,
+                allocated / seconds / (1 << 20), allocated / this.frames);
+    }
+
+    // The scripted camera path: starts where Main does and flies into the grid along +z, covering
+    // its depth over the run while yawing slowly left and right
+    private static void step(Camera camera, GridScene scene, int frame, int frames)
+    {
+        if(frame == 0)
+        {
+            camera.setPosition(0, 0, 10);
+        }
+        double depth = scene.side * GridScene.SPACING;
+        camera.rotateY(0.5 * Math.sin(2 * Math.PI * frame / frames));
+        camera.moveForward(-depth / frames);
+    }
+    private static void render(Renderer renderer, GridScene scene, FrameBuffer frame, DepthBuffer depth,
+                               Camera camera, double scale, int center, int f)
+    {
+        frame.clear(0x000000);
+        depth.clear();
+        // Same spin per frame as Main
+        scene.animate(Math.toRadians(3) * (f + 1));
+        scene.draw(renderer, frame, depth, camera, scale, center);
+    }
+
+    private boolean isDumped(int frame)
+    {
+        for(int f : this.dumpFrames)
+        {
+            if(f == frame)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Nearest-rank percentile of sorted nanosecond times, in milliseconds
+    private static double percentile(long[] sorted, int p)
+    {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+
+    // Bytes allocated so far by every live thread, render workers included
+    private static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for(long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+        {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    private void dump(FrameBuffer frame, File file) throws IOException
+    {
+        if(this.format.equals("ppm"))
+        {
+            try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file)))
+            {
+                out.write(("P6\n" + frame.width + " " + frame.height + "\n255\n").getBytes());
+                for(int rgb : frame.pixels)
+                {
+                    out.write(rgb >> 16);
+                    out.write(rgb >> 8);
+                    out.write(rgb);
+                }
+            }
+            return;
+        }
+        ImageIO.write(frame.image, this.format, file);
+    }
+}
@@ -0,0 +1,552 @@
+package engine;
+
+import java.util.Arrays;
+
+// Bounding volume hierarchy over the instances of one mesh. Every instance is boxed by the world
+// AABB of its bounding sphere, which does not change when the instance only turns about its own
+// center. Nodes split their instances at the median along the longest axis of their centers,
+// down to leaves of at most LEAF_SIZE instances. Leaf boxes are padded by MARGIN of their largest
+// instance radius, so after an instance moves update() usually finds it still inside its leaf
+// and has nothing to refit.
+//
+// Queries leave the indices of the instances found in getResults()[0..count) and return count.
+// Whole subtrees inside a frustum, box or sphere are taken without visiting their instances'
+// bounds, so a query costs about the nodes along the edge of the region plus what it returns.
+class Bvh
+{
+    static final int LEAF_SIZE = 4;
+    static final double MARGIN = 0.1;
+
+    final Instance[] instances;
+    final int count;
+    final Bounds bounds;
+
+    // Node boxes as minX, minY, minZ, maxX, maxY, maxZ. An inner node's children are the nodes
+    // left[n] and left[n] + 1, and a leaf has left[n] == -1. Every node's instances are
+    // items[first[n]..first[n] + size[n]).
+    private double[] box;
+    private int[] left;
+    private int[] first;
+    private int[] size;
+    private int[] parent;
+    private int nodeCount;
+    // Instance indices, grouped by leaf, and the leaf holding each instance
+    private final int[] items;
+    private final int[] leafOf;
+
+    private int[] results = new int[64];
+    private int resultCount;
+    private int[] stack = new int[64];
+    private final Mat4 model = new Mat4();
+    private final double[] scratch = new double[6];
+    private double hitDistance;
+
+    // Indexes instances[0..count), all placing geometry with the given object-space bounds
+    public Bvh(Bounds bounds, Instance[] instances, int count)
+    {
+        this.instances = instances;
+        this.count = count;
+        this.bounds = bounds;
+        this.items = new int[count];
+        this.leafOf = new int[count];
+        build();
+    }
+
+    // Rebuilds the tree from scratch, for when many instances moved far enough that refitting
+    // would leave loose, overlapping nodes
+    public void build()
+    {
+        int capacity = Math.max(1, 2 * this.count);
+        this.box = new double[capacity * 6];
+        this.left = new int[capacity];
+        this.first = new int[capacity];
+        this.size = new int[capacity];
+        this.parent = new int[capacity];
+        this.nodeCount = 1;
+        this.parent[0] = -1;
+
+        double[] centers = new double[this.count * 3];
+        for(int i = 0; i < this.count; i++)
+        {
+            this.items[i] = i;
+            worldBox(i, this.scratch);
+            centers[3 * i] = (this.scratch[0] + this.scratch[3]) / 2;
+            centers[3 * i + 1] = (this.scratch[1] + this.scratch[4]) / 2;
+            centers[3 * i + 2] = (this.scratch[2] + this.scratch[5]) / 2;
+        }
+        build(0, 0, this.count, centers);
+    }
+    private void build(int node, int from, int to, double[] centers)
+    {
+        this.first[node] = from;
+        this.size[node] = to - from;
+        if(to - from <= LEAF_SIZE)
+        {
+            this.left[node] = -1;
+            for(int k = from; k < to; k++)
+            {
+                this.leafOf[this.items[k]] = node;
+            }
+            fitLeaf(node);
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for(int k = from; k < to; k++)
+        {
+            int o = 3 * this.items[k];
+            minX = Math.min(minX, centers[o]);
+            minY = Math.min(minY, centers[o + 1]);
+            minZ = Math.min(minZ, centers[o + 2]);
+            maxX = Math.max(maxX, centers[o]);
+            maxY = Math.max(maxY, centers[o + 1]);
+            maxZ = Math.max(maxZ, centers[o + 2]);
+        }
+        int axis = maxX - minX >= maxY - minY && maxX - minX >= maxZ - minZ ? 0 : maxY - minY >= maxZ - minZ ? 1 : 2;
+        int middle = (from + to) >>> 1;
+        select(from, to, middle, centers, axis);
+
+        int child = this.nodeCount;
+        this.nodeCount += 2;
+        this.left[node] = child;
+        this.parent[child] = node;
+        this.parent[child + 1] = node;
+        build(child, from, middle, centers);
+        build(child + 1, middle, to, centers);
+        fitInner(node);
+    }
+    // Partially sorts items[from..to) by center along axis so items[k] lands where a full sort
+    // would put it, with no larger center before it and no smaller one after
+    private void select(int from, int to, int k, double[] centers, int axis)
+    {
+        int lo = from, hi = to - 1;
+        while(lo < hi)
+        {
+            double pivot = centers[3 * this.items[(lo + hi) >>> 1] + axis];
+            int i = lo, j = hi;
+            while(i <= j)
+            {
+                while(centers[3 * this.items[i] + axis] < pivot)
+                {
+                    i++;
+                }
+                while(centers[3 * this.items[j] + axis] > pivot)
+                {
+                    j--;
+                }
+                if(i <= j)
+                {
+                    int swap = this.items[i];
+                    this.items[i] = this.items[j];
+                    this.items[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j)
+            {
+                hi = j;
+            }
+            else if(k >= i)
+            {
+                lo = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    // World AABB of instance i's bounding sphere into dst as min xyz, max xyz
+    private void worldBox(int i, double[] dst)
+    {
+        // Straight from the instance's floats, as refit runs this for every instance
+        Instance m = this.instances[i];
+        Bounds b = this.bounds;
+        double cx = m.m00 * b.centerX + m.m01 * b.centerY + m.m02 * b.centerZ + m.m03;
+        double cy = m.m10 * b.centerX + m.m11 * b.centerY + m.m12 * b.centerZ + m.m13;
+        double cz = m.m20 * b.centerX + m.m21 * b.centerY + m.m22 * b.centerZ + m.m23;
+        double sx = (double) m.m00 * m.m00 + (double) m.m10 * m.m10 + (double) m.m20 * m.m20;
+        double sy = (double) m.m01 * m.m01 + (double) m.m11 * m.m11 + (double) m.m21 * m.m21;
+        double sz = (double) m.m02 * m.m02 + (double) m.m12 * m.m12 + (double) m.m22 * m.m22;
+        double r = b.radius * Math.sqrt(max(sx, max(sy, sz)));
+        dst[0] = cx - r;
+        dst[1] = cy - r;
+        dst[2] = cz - r;
+        dst[3] = cx + r;
+        dst[4] = cy + r;
+        dst[5] = cz + r;
+    }
+    // Sets a node's box and returns whether it changed
+    private boolean setBox(int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ)
+    {
+        double[] b = this.box;
+        int o = node * 6;
+        if(b[o] == minX && b[o + 1] == minY && b[o + 2] == minZ && b[o + 3] == maxX && b[o + 4] == maxY && b[o + 5] == maxZ)
+        {
+            return false;
+        }
+        b[o] = minX;
+        b[o + 1] = minY;
+        b[o + 2] = minZ;
+        b[o + 3] = maxX;
+        b[o + 4] = maxY;
+        b[o + 5] = maxZ;
+        return true;
+    }
+    private boolean fitLeaf(int node)
+    {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        double radius = 0;
+        double[] b = this.scratch;
+        for(int k = this.first[node]; k < this.first[node] + this.size[node]; k++)
+        {
+            worldBox(this.items[k], b);
+            minX = min(minX, b[0]);
+            minY = min(minY, b[1]);
+            minZ = min(minZ, b[2]);
+            maxX = max(maxX, b[3]);
+            maxY = max(maxY, b[4]);
+            maxZ = max(maxZ, b[5]);
+            radius = max(radius, (b[3] - b[0]) / 2);
+        }
+        double pad = MARGIN * radius;
+        return setBox(node, minX - pad, minY - pad, minZ - pad, maxX + pad, maxY + pad, maxZ + pad);
+    }
+    private boolean fitInner(int node)
+    {
+        double[] b = this.box;
+        int l = this.left[node] * 6, r = l + 6;
+        return setBox(node, min(b[l], b[r]), min(b[l + 1], b[r + 1]), min(b[l + 2], b[r + 2]),
+                max(b[l + 3], b[r + 3]), max(b[l + 4], b[r + 4]), max(b[l + 5], b[r + 5]));
+    }
+    // Math.min and Math.max order NaN and -0.0, which costs branches refit cannot afford on
+    // bounds that never hold either
+    private static double min(double a, double b)
+    {
+        return a < b ? a : b;
+    }
+    private static double max(double a, double b)
+    {
+        return a > b ? a : b;
+    }
+
+    // Call after instance i moved. While it stays inside its leaf's padded box nothing changes;
+    // otherwise the boxes from its leaf up are refitted until one comes out unchanged.
+    public void update(int i)
+    {
+        int node = this.leafOf[i];
+        double[] w = this.scratch;
+        worldBox(i, w);
+        double[] b = this.box;
+        int o = node * 6;
+        if(w[0] >= b[o] && w[1] >= b[o + 1] && w[2] >= b[o + 2] && w[3] <= b[o + 3] && w[4] <= b[o + 4] && w[5] <= b[o + 5])
+        {
+            return;
+        }
+        fitLeaf(node);
+        node = this.parent[node];
+        while(node >= 0)
+        {
+            if(!fitInner(node))
+            {
+                break;
+            }
+            node = this.parent[node];
+        }
+    }
+    // Refits every box bottom up, tightening them again, for after most instances moved.
+    // Children always come after their parent, so walking the nodes backwards visits children
+    // first.
+    public void refit()
+    {
+        for(int node = this.nodeCount - 1; node >= 0; node--)
+        {
+            if(this.left[node] < 0)
+            {
+                fitLeaf(node);
+            }
+            else
+            {
+                fitInner(node);
+            }
+        }
+    }
+
+    public int[] getResults()
+    {
+        return this.results;
+    }
+    private void addResult(int i)
+    {
+        if(this.resultCount == this.results.length)
+        {
+            this.results = Arrays.copyOf(this.results, this.resultCount * 2);
+        }
+        this.results[this.resultCount++] = i;
+    }
+    private void addAll(int node)
+    {
+        for(int k = this.first[node]; k < this.first[node] + this.size[node]; k++)
+        {
+            addResult(this.items[k]);
+        }
+    }
+    private void push(int top, int node)
+    {
+        if(top == this.stack.length)
+        {
+            this.stack = Arrays.copyOf(this.stack, top * 2);
+        }
+        this.stack[top] = node;
+    }
+
+    // Instances not completely outside frustum, each tested exactly with Frustum.culls where its
+    // node straddles a plane
+    public int queryFrustum(Frustum frustum)
+    {
+        this.resultCount = 0;
+        if(this.count == 0)
+        {
+            return 0;
+        }
+        double[] b = this.box;
+        int top = 0;
+        push(top++, 0);
+        while(top > 0)
+        {
+            int node = this.stack[--top];
+            int o = node * 6;
+            int side = frustum.classifyBox((b[o] + b[o + 3]) / 2, (b[o + 1] + b[o + 4]) / 2, (b[o + 2] + b[o + 5]) / 2,
+                    (b[o + 3] - b[o]) / 2, (b[o + 4] - b[o + 1]) / 2, (b[o + 5] - b[o + 2]) / 2);
+            if(side == Frustum.OUTSIDE)
+            {
+                continue;
+            }
+            if(side == Frustum.INSIDE)
+            {
+                addAll(node);
+            }
+            else if(this.left[node] < 0)
+            {
+                for(int k = this.first[node]; k < this.first[node] + this.size[node]; k++)
+                {
+                    int i = this.items[k];
+                    if(!frustum.culls(this.bounds, this.instances[i].getModel(this.model)))
+                    {
+                        addResult(i);
+                    }
+                }
+            }
+            else
+            {
+                // Right first so the left child comes off the stack next
+                push(top++, this.left[node] + 1);
+                push(top++, this.left[node]);
+            }
+        }
+        return this.resultCount;
+    }
+
+    // Instances whose bounding box overlaps the box from min to max
+    public int queryBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ)
+    {
+        this.resultCount = 0;
+        if(this.count == 0)
+        {
+            return 0;
+        }
+        double[] b = this.box;
+        int top = 0;
+        push(top++, 0);
+        while(top > 0)
+        {
+            int node = this.stack[--top];
+            int o = node * 6;
+            if(b[o] > maxX || b[o + 1] > maxY || b[o + 2] > maxZ || b[o + 3] < minX || b[o + 4] < minY || b[o + 5] < minZ)
+            {
+                continue;
+            }
+            if(b[o] >= minX && b[o + 1] >= minY && b[o + 2] >= minZ && b[o + 3] <= maxX && b[o + 4] <= maxY && b[o + 5] <= maxZ)
+            {
+                addAll(node);
+            }
+            else if(this.left[node] < 0)
+            {
+                for(int k = this.first[node]; k < this.first[node] + this.size[node]; k++)
+                {
+                    int i = this.items[k];
+                    double[] w = this.scratch;
+                    worldBox(i, w);
+                    if(w[0] <= maxX && w[1] <= maxY && w[2] <= maxZ && w[3] >= minX && w[4] >= minY && w[5] >= minZ)
+                    {
+                        addResult(i);
+                    }
+                }
+            }
+            else
+            {
+                push(top++, this.left[node] + 1);
+                push(top++, this.left[node]);
+            }
+        }
+        return this.resultCount;
+    }
+
+    // Instances whose bounding sphere reaches within radius of (x, y, z)
+    public int querySphere(double x, double y, double z, double radius)
+    {
+        this.resultCount = 0;
+        if(this.count == 0)
+        {
+            return 0;
+        }
+        double[] b = this.box;
+        int top = 0;
+        push(top++, 0);
+        while(top > 0)
+        {
+            int node = this.stack[--top];
+            int o = node * 6;
+            // Squared distance from the point to the box, and to its farthest corner
+            double near = 0, far = 0;
+            for(int a = 0; a < 3; a++)
+            {
+                double c = a == 0 ? x : a == 1 ? y : z;
+                double lo = c - b[o + a], hi = b[o + 3 + a] - c;
+                double outside = Math.max(0, Math.max(-lo, -hi));
+                near += outside * outside;
+                double reach = Math.max(lo, hi);
+                far += reach * reach;
+            }
+            if(near > radius * radius)
+            {
+                continue;
+            }
+            if(far <= radius * radius)
+            {
+                addAll(node);
+            }
+            else if(this.left[node] < 0)
+            {
+                for(int k = this.first[node]; k < this.first[node] + this.size[node]; k++)
+                {
+                    int i = this.items[k];
+                    double[] w = this.scratch;
+                    worldBox(i, w);
+                    double dx = (w[0] + w[3]) / 2 - x, dy = (w[1] + w[4]) / 2 - y, dz = (w[2] + w[5]) / 2 - z;
+                    double reach = radius + (w[3] - w[0]) / 2;
+                    if(dx * dx + dy * dy + dz * dz <= reach * reach)
+                    {
+                        addResult(i);
+                    }
+                }
+            }
+            else
+            {
+                push(top++, this.left[node] + 1);
+                push(top++, this.left[node]);
+            }
+        }
+        return this.resultCount;
+    }
+
+    // Nearest instance whose object-space bounding box the ray from origin along direction enters
+    // within maxDistance, measured in lengths of direction, or -1. getHitDistance() tells where.
+    // Nodes are visited nearest first and skipped once they start beyond the best hit so far.
+    public int raycast(double ox, double oy, double oz, double dx, double dy, double dz, double maxDistance)
+    {
+        this.hitDistance = maxDistance;
+        int hit = -1;
+        if(this.count == 0)
+        {
+            return hit;
+        }
+        double ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+        int top = 0;
+        push(top++, 0);
+        while(top > 0)
+        {
+            int node = this.stack[--top];
+            // A miss is infinitely far, which an unlimited ray would otherwise still reach
+            double t = enter(node, ox, oy, oz, ix, iy, iz);
+            if(t > this.hitDistance || t == Double.POSITIVE_INFINITY)
+            {
+                continue;
+            }
+            if(this.left[node] < 0)
+            {
+                for(int k = this.first[node]; k < this.first[node] + this.size[node]; k++)
+                {
+                    int i = this.items[k];
+                    t = hitInstance(i, ox, oy, oz, dx, dy, dz);
+                    if(t <= this.hitDistance && t != Double.POSITIVE_INFINITY)
+                    {
+                        this.hitDistance = t;
+                        hit = i;
+                    }
+                }
+                continue;
+            }
+            int near = this.left[node], far = near + 1;
+            if(enter(far, ox, oy, oz, ix, iy, iz) < enter(near, ox, oy, oz, ix, iy, iz))
+            {
+                near = far;
+                far = near - 1;
+            }
+            push(top++, far);
+            push(top++, near);
+        }
+        return hit;
+    }
+    public double getHitDistance()
+    {
+        return this.hitDistance;
+    }
+    // Distance along the ray to where it enters node's box, or infinity when it misses
+    private double enter(int node, double ox, double oy, double oz, double ix, double iy, double iz)
+    {
+        double[] b = this.box;
+        int o = node * 6;
+        double tx0 = (b[o] - ox) * ix, tx1 = (b[o + 3] - ox) * ix;
+        double ty0 = (b[o + 1] - oy) * iy, ty1 = (b[o + 4] - oy) * iy;
+        double tz0 = (b[o + 2] - oz) * iz, tz1 = (b[o + 5] - oz) * iz;
+        double near = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)), Math.max(Math.min(tz0, tz1), 0));
+        double far = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)), Math.max(tz0, tz1));
+        // NaN from a zero direction component on a box face counts as a miss
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+    // Brings the ray into instance i's object space through the inverse of its model's 3 x 3 and
+    // intersects it with the object's box there; distances along the ray are the same in both
+    private double hitInstance(int i, double ox, double oy, double oz, double dx, double dy, double dz)
+    {
+        double[] m = this.instances[i].getModel(this.model).m;
+        double a = m[0], b = m[1], c = m[2], d = m[4], e = m[5], f = m[6], g = m[8], h = m[9], k = m[10];
+        double c00 = e * k - f * h, c01 = c * h - b * k, c02 = b * f - c * e;
+        double c10 = f * g - d * k, c11 = a * k - c * g, c12 = c * d - a * f;
+        double c20 = d * h - e * g, c21 = b * g - a * h, c22 = a * e - b * d;
+        double det = a * c00 + b * c10 + c * c20;
+        if(det == 0)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        double px = ox - m[3], py = oy - m[7], pz = oz - m[11];
+        double lx = (c00 * px + c01 * py + c02 * pz) / det;
+        double ly = (c10 * px + c11 * py + c12 * pz) / det;
+        double lz = (c20 * px + c21 * py + c22 * pz) / det;
+        double ux = (c00 * dx + c01 * dy + c02 * dz) / det;
+        double uy = (c10 * dx + c11 * dy + c12 * dz) / det;
+        double uz = (c20 * dx + c21 * dy + c22 * dz) / det;
+
+        Bounds bo = this.bounds;
+        double tx0 = (bo.centerX - bo.halfX - lx) / ux, tx1 = (bo.centerX + bo.halfX - lx) / ux;
+        double ty0 = (bo.centerY - bo.halfY - ly) / uy, ty1 = (bo.centerY + bo.halfY - ly) / uy;
+        double tz0 = (bo.centerZ - bo.halfZ - lz) / uz, tz1 = (bo.centerZ + bo.halfZ - lz) / uz;
+        double near = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)), Math.max(Math.min(tz0, tz1), 0));
+        double far = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)), Math.max(tz0, tz1));
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,80 @@
+package engine;
+
+// An instance of the shared cube mesh that keeps its scale, rotation and translation apart
+class Cube extends Instance
+{
+    public final Mesh mesh = Mesh.CUBE;
+    public final Mat4 rotationMatrix;
+    public final Mat4 scaleMatrix;
+    public final Mat4 transformMatrix;
+    private boolean modelDirty;
+
+    // Per-cube scratch for the single-object path, so it does not allocate per frame
+    private final Mat4 mvpMatrix = new Mat4();
+    private final NormalMatrix normals = new NormalMatrix();
+    private final ClipBuffer clipVertices;
+    private final TriangleBuffer ownTriangles;
+
+    public Cube()
+    {
+        this.rotationMatrix = new Mat4();
+        this.scaleMatrix = new Mat4();
+        this.transformMatrix = new Mat4();
+
+        this.clipVertices = new ClipBuffer(this.mesh.vertices.size);
+        this.clipVertices.size = this.mesh.vertices.size;
+        this.ownTriangles = new TriangleBuffer(this.mesh.triangleCount);
+    }
+    public void rotate(Mat4 rotation)
+    {
+        this.rotationMatrix.set(rotation);
+        this.modelDirty = true;
+    }
+    public void scale(Mat4 scale)
+    {
+        this.scaleMatrix.set(scale);
+        this.modelDirty = true;
+    }
+    public void transform(Mat4 transform)
+    {
+        this.transformMatrix.set(transform);
+        this.modelDirty = true;
+    }
+    // model = transform * rotation * scale, recomposed only after one of them changed
+    @Override
+    public Mat4 getModel(Mat4 dst)
+    {
+        if(this.modelDirty)
+        {
+            Mat4.mulInto(dst, this.rotationMatrix, this.scaleMatrix);
+            setModel(Mat4.mulInto(dst, this.transformMatrix, dst));
+            this.modelDirty = false;
+        }
+        return super.getModel(dst);
+    }
+    // Returns the cube's own clip-space buffer, overwritten on every call
+    public ClipBuffer transformedVertices(Camera camera)
+    {
+        getModel(this.mvpMatrix);
+        Mat4.mulInto(this.mvpMatrix, camera.getViewProjection(), this.mvpMatrix);
+        this.clipVertices.transform(this.mesh.vertices, this.mvpMatrix, 0);
+        return this.clipVertices;
+    }
+
+    // Draws the cube's twelve edges, without the diagonals across its faces
+    public void draw(Wireframe wire, Camera camera, double scale, int center)
+    {
+        ClipBuffer clip = transformedVertices(camera);
+        clip.project(camera, scale, center, 0, clip.size);
+        wire.drawEdges(clip, camera, scale, center, 0, this.mesh.edges(false));
+    }
+
+    public void drawFilled(Rasterizer r, Lights lights, Camera camera, double scale, int center)
+    {
+        ClipBuffer clip = transformedVertices(camera);
+        clip.project(camera, scale, center, 0, clip.size);
+        this.ownTriangles.clear();
+        this.mesh.setupTriangles(camera, clip, 0, IdBuffer.NONE, this, this.normals, lights, false, this.ownTriangles);
+        r.drawTriangles(this.ownTriangles);
+    }
+}
@@ -0,0 +1,140 @@
+package engine;
+
+// Row-major float depth per pixel plus the farthest depth of every BLOCK x BLOCK block and of
+// every COARSE x COARSE region. Depths only ever get nearer during a frame, so the maxes can lag
+// behind their pixels and stay safe bounds; a triangle whose nearest point is not in front of
+// one cannot pass the depth test anywhere under it.
+class DepthBuffer
+{
+    static final int BLOCK = Rasterizer.BLOCK;
+    static final int BLOCK_SHIFT = Integer.numberOfTrailingZeros(BLOCK);
+    // Same size as the render tiles, so each region is only touched by the worker owning its tile
+    static final int COARSE = TileGrid.TILE;
+    static final int COARSE_SHIFT = Integer.numberOfTrailingZeros(COARSE);
+
+    final int width;
+    final int height;
+    final float[] depth;
+    final int blocksX;
+    final int blocksY;
+    final float[] blockMax;
+    final int coarseX;
+    final int coarseY;
+    // Refreshed from blockMax on demand, when a block below it has changed
+    private final float[] coarseMax;
+    private final boolean[] coarseDirty;
+
+    public DepthBuffer(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.depth = new float[width * height];
+        this.blocksX = (width + BLOCK - 1) / BLOCK;
+        this.blocksY = (height + BLOCK - 1) / BLOCK;
+        this.blockMax = new float[this.blocksX * this.blocksY];
+        this.coarseX = (width + COARSE - 1) / COARSE;
+        this.coarseY = (height + COARSE - 1) / COARSE;
+        this.coarseMax = new float[this.coarseX * this.coarseY];
+        this.coarseDirty = new boolean[this.coarseX * this.coarseY];
+        clear();
+    }
+    public void clear()
+    {
+        java.util.Arrays.fill(this.depth, Float.POSITIVE_INFINITY);
+        java.util.Arrays.fill(this.blockMax, Float.POSITIVE_INFINITY);
+        java.util.Arrays.fill(this.coarseMax, Float.POSITIVE_INFINITY);
+        java.util.Arrays.fill(this.coarseDirty, false);
+    }
+    public float get(int x, int y)
+    {
+        return this.depth[y * this.width + x];
+    }
+    public float blockMax(int x, int y)
+    {
+        return this.blockMax[(y >> BLOCK_SHIFT) * this.blocksX + (x >> BLOCK_SHIFT)];
+    }
+    // Recomputes the max of the block holding pixel (x, y) after its depths were written
+    public void updateBlock(int x, int y)
+    {
+        int bx = x >> BLOCK_SHIFT;
+        int by = y >> BLOCK_SHIFT;
+        int x0 = bx << BLOCK_SHIFT;
+        int y0 = by << BLOCK_SHIFT;
+        int x1 = Math.min(x0 + BLOCK, this.width);
+        int y1 = Math.min(y0 + BLOCK, this.height);
+        float max = Float.NEGATIVE_INFINITY;
+        for(int py = y0; py < y1; py++)
+        {
+            int row = py * this.width;
+            for(int px = x0; px < x1; px++)
+            {
+                max = Math.max(max, this.depth[row + px]);
+            }
+        }
+        this.blockMax[by * this.blocksX + bx] = max;
+        this.coarseDirty[(y >> COARSE_SHIFT) * this.coarseX + (x >> COARSE_SHIFT)] = true;
+    }
+
+    // True when nothing in [minX, maxX] x [minY, maxY] is stored farther than z, so geometry
+    // no nearer than z is hidden everywhere in the rectangle. Costs one compare per coarse
+    // region, and one per block only in regions that do not settle it. Pixels are clamped
+    // to the buffer.
+    public boolean isOccluded(int minX, int minY, int maxX, int maxY, double z)
+    {
+        minX = Math.max(minX, 0);
+        minY = Math.max(minY, 0);
+        maxX = Math.min(maxX, this.width - 1);
+        maxY = Math.min(maxY, this.height - 1);
+        if(minX > maxX || minY > maxY)
+        {
+            return true;
+        }
+        for(int cy = minY >> COARSE_SHIFT; cy <= maxY >> COARSE_SHIFT; cy++)
+        {
+            for(int cx = minX >> COARSE_SHIFT; cx <= maxX >> COARSE_SHIFT; cx++)
+            {
+                if(coarseMax(cx, cy) <= z)
+                {
+                    continue;
+                }
+                int bx0 = Math.max(minX, cx << COARSE_SHIFT) >> BLOCK_SHIFT;
+                int by0 = Math.max(minY, cy << COARSE_SHIFT) >> BLOCK_SHIFT;
+                int bx1 = Math.min(maxX, ((cx + 1) << COARSE_SHIFT) - 1) >> BLOCK_SHIFT;
+                int by1 = Math.min(maxY, ((cy + 1) << COARSE_SHIFT) - 1) >> BLOCK_SHIFT;
+                for(int by = by0; by <= by1; by++)
+                {
+                    for(int bx = bx0; bx <= bx1; bx++)
+                    {
+                        if(this.blockMax[by * this.blocksX + bx] > z)
+                        {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    private float coarseMax(int cx, int cy)
+    {
+        int i = cy * this.coarseX + cx;
+        if(this.coarseDirty[i])
+        {
+            int bx0 = cx << (COARSE_SHIFT - BLOCK_SHIFT);
+            int by0 = cy << (COARSE_SHIFT - BLOCK_SHIFT);
+            int bx1 = Math.min(bx0 + (COARSE >> BLOCK_SHIFT), this.blocksX);
+            int by1 = Math.min(by0 + (COARSE >> BLOCK_SHIFT), this.blocksY);
+            float max = Float.NEGATIVE_INFINITY;
+            for(int by = by0; by < by1; by++)
+            {
+                for(int bx = bx0; bx < bx1; bx++)
+                {
+                    max = Math.max(max, this.blockMax[by * this.blocksX + bx]);
+                }
+            }
+            this.coarseMax[i] = max;
+            this.coarseDirty[i] = false;
+        }
+        return this.coarseMax[i];
+    }
+}
@@ -0,0 +1,161 @@
+package engine;
+
+// Puts instances in front-to-back order of integer depth keys, with ties in instance order, so
+// the result depends only on the keys and not on how it was reached. The full sort is an LSD
+// radix sort, RADIX_BITS of the key per pass. While the view changes little between frames the
+// last frame's order is nearly right still: its instances that are visible again, followed by
+// those that were not, are then finished with an insertion sort, which gives up for the radix
+// sort once it has moved entries further than MAX_SHIFTS per instance on average. After that it
+// is not tried again for RETRY frames, as a failed try costs about a radix sort. Every array
+// grows to the largest scene seen and is kept, so sorting allocates nothing from frame to frame.
+class DepthSort
+{
+    static final int KEY_BITS = 16;
+    static final int MAX_KEY = (1 << KEY_BITS) - 1;
+    private static final int RADIX_BITS = 8;
+    private static final int MAX_SHIFTS = 2;
+    private static final int RETRY = 8;
+
+    // Key above the instance index, so comparing the longs compares keys and then indices
+    private long[] entries = new long[0];
+    private long[] scratch = new long[0];
+    private final int[] counts = new int[1 << RADIX_BITS];
+    // Per instance: its key this frame, and the frame it was last visible in, negated once it
+    // was taken over from the last order
+    private int[] keys = new int[0];
+    private int[] seen = new int[0];
+    private int frame;
+    private int[] last = new int[0];
+    private int lastCount;
+    // Frames left before the last order is tried again
+    private int skip;
+
+    // Reorders order[0..count), indices below instances given in increasing order, by keys[0..count),
+    // the key of each entry of order in the same place
+    public void sort(int[] order, int[] keys, int count, int instances)
+    {
+        if(this.keys.length < instances)
+        {
+            this.keys = new int[instances];
+            this.seen = new int[instances];
+            this.frame = 0;
+            this.lastCount = 0;
+        }
+        if(this.entries.length < count)
+        {
+            this.entries = new long[order.length];
+            this.scratch = new long[order.length];
+            this.last = java.util.Arrays.copyOf(this.last, order.length);
+        }
+        int frame = ++this.frame;
+        for(int k = 0; k < count; k++)
+        {
+            this.keys[order[k]] = keys[k];
+            this.seen[order[k]] = frame;
+        }
+        boolean sorted = false;
+        if(this.skip > 0)
+        {
+            this.skip--;
+        }
+        else if(this.lastCount > 0)
+        {
+            sorted = insertionSort(order, count, frame);
+            if(!sorted)
+            {
+                this.skip = RETRY;
+            }
+        }
+        if(!sorted)
+        {
+            radixSort(order, keys, count);
+        }
+        for(int k = 0; k < count; k++)
+        {
+            order[k] = (int) this.entries[k];
+        }
+        System.arraycopy(order, 0, this.last, 0, count);
+        this.lastCount = count;
+    }
+
+    // Sorts the last order's visible instances and then the newly visible ones into entries,
+    // or returns false when that takes too many moves
+    private boolean insertionSort(int[] order, int count, int frame)
+    {
+        long[] entries = this.entries;
+        int n = 0;
+        for(int k = 0; k < this.lastCount; k++)
+        {
+            int i = this.last[k];
+            if(this.seen[i] == frame)
+            {
+                this.seen[i] = -frame;
+                entries[n++] = entry(i);
+            }
+        }
+        for(int k = 0; k < count; k++)
+        {
+            if(this.seen[order[k]] == frame)
+            {
+                entries[n++] = entry(order[k]);
+            }
+        }
+        long budget = (long) count * MAX_SHIFTS;
+        for(int k = 1; k < count; k++)
+        {
+            long e = entries[k];
+            int j = k - 1;
+            while(j >= 0 && entries[j] > e)
+            {
+                entries[j + 1] = entries[j];
+                j--;
+            }
+            entries[j + 1] = e;
+            budget -= k - 1 - j;
+            if(budget < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    private long entry(int instance)
+    {
+        return (long) this.keys[instance] << 32 | instance;
+    }
+
+    // Stable on the keys, and order comes in instance order, so ties stay in instance order
+    private void radixSort(int[] order, int[] keys, int count)
+    {
+        long[] from = this.entries, to = this.scratch;
+        for(int k = 0; k < count; k++)
+        {
+            from[k] = (long) keys[k] << 32 | order[k];
+        }
+        int mask = (1 << RADIX_BITS) - 1;
+        for(int shift = 32; shift < 32 + KEY_BITS; shift += RADIX_BITS)
+        {
+            java.util.Arrays.fill(this.counts, 0);
+            for(int k = 0; k < count; k++)
+            {
+                this.counts[(int) (from[k] >>> shift) & mask]++;
+            }
+            int start = 0;
+            for(int d = 0; d < this.counts.length; d++)
+            {
+                int c = this.counts[d];
+                this.counts[d] = start;
+                start += c;
+            }
+            for(int k = 0; k < count; k++)
+            {
+                to[this.counts[(int) (from[k] >>> shift) & mask]++] = from[k];
+            }
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+        // KEY_BITS / RADIX_BITS passes is even, so the sorted entries end up back in entries
+        assert from == this.entries;
+    }
+}
@@ -0,0 +1,45 @@
+package engine;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+// Packed RGB pixels of a TYPE_INT_RGB image, written directly instead of through Graphics, and
+// optionally what was drawn at each of them for picking
+class FrameBuffer
+{
+    final BufferedImage image;
+    final int[] pixels;
+    final int width;
+    final int height;
+    // Filled alongside pixels while set; null keeps the rasterizer on its path without ids
+    IdBuffer ids;
+
+    public FrameBuffer(int width, int height)
+    {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+    }
+    public FrameBuffer(BufferedImage image)
+    {
+        assert image.getType() == BufferedImage.TYPE_INT_RGB;
+        this.image = image;
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+    }
+    public void clear(int rgb)
+    {
+        java.util.Arrays.fill(this.pixels, rgb);
+        if(this.ids != null)
+        {
+            this.ids.clear();
+        }
+    }
+    public void setPicking(boolean picking)
+    {
+        this.ids = picking ? new IdBuffer(this.width, this.height) : null;
+    }
+    public static int rgb(int r, int g, int b)
+    {
+        return (r << 16) | (g << 8) | b;
+    }
+}
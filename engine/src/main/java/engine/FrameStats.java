@@ -0,0 +1,158 @@
+package engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Timers and counters for one frame of the pipeline. Collection is switched on with
+// -Dengine.stats=true. ENABLED is a static final, so with it off the JIT folds every
+// "if(FrameStats.ENABLED)" away and the instrumented code runs as if it was not there.
+class FrameStats
+{
+    static final boolean ENABLED = Boolean.getBoolean("engine.stats");
+
+    static final int CULL = 0;
+    // Front-to-back ordering of the objects that survived culling
+    static final int SORT = 1;
+    static final int TRANSFORM = 2;
+    static final int SETUP = 3;
+    static final int BIN = 4;
+    static final int RASTER = 5;
+    // Resolving a visibility buffer, and picking ids in either mode
+    static final int SHADE = 6;
+    static final String[] STAGES = {"cull", "sort", "transform", "setup", "bin", "raster", "shade"};
+
+    final long[] stageNanos = new long[STAGES.length];
+    int objectsSubmitted;
+    int objectsCulled;
+    // Triangles of the objects that survived culling, and how many of them faced away
+    int triangles;
+    int trianglesBackFacing;
+    // Triangles the chosen levels of detail left out compared to drawing every object in full
+    long trianglesSavedByLod;
+    // Triangle and tile pairs the rasterizers dropped on the coarse depth test
+    int trianglesOccluded;
+    long pixelsTested;
+    long pixelsWritten;
+    // Edges a wireframe frame drew, after dropping those off the screen
+    long lines;
+    int screenPixels;
+
+    public void reset(int screenPixels)
+    {
+        java.util.Arrays.fill(this.stageNanos, 0);
+        this.objectsSubmitted = 0;
+        this.objectsCulled = 0;
+        this.triangles = 0;
+        this.trianglesBackFacing = 0;
+        this.trianglesSavedByLod = 0;
+        this.trianglesOccluded = 0;
+        this.pixelsTested = 0;
+        this.pixelsWritten = 0;
+        this.lines = 0;
+        this.screenPixels = screenPixels;
+    }
+
+    // Adds the time since start to stage and returns the current time, to start the next stage
+    public long stage(int stage, long start)
+    {
+        long now = System.nanoTime();
+        this.stageNanos[stage] += now - start;
+        return now;
+    }
+
+    public long totalNanos()
+    {
+        long total = 0;
+        for(long nanos : this.stageNanos)
+        {
+            total += nanos;
+        }
+        return total;
+    }
+    // Pixels written per screen pixel
+    public double overdraw()
+    {
+        return this.screenPixels == 0 ? 0 : (double) this.pixelsWritten / this.screenPixels;
+    }
+
+    public FrameStats copy()
+    {
+        FrameStats copy = new FrameStats();
+        System.arraycopy(this.stageNanos, 0, copy.stageNanos, 0, this.stageNanos.length);
+        copy.objectsSubmitted = this.objectsSubmitted;
+        copy.objectsCulled = this.objectsCulled;
+        copy.triangles = this.triangles;
+        copy.trianglesBackFacing = this.trianglesBackFacing;
+        copy.trianglesSavedByLod = this.trianglesSavedByLod;
+        copy.trianglesOccluded = this.trianglesOccluded;
+        copy.pixelsTested = this.pixelsTested;
+        copy.pixelsWritten = this.pixelsWritten;
+        copy.lines = this.lines;
+        copy.screenPixels = this.screenPixels;
+        return copy;
+    }
+
+    // Fills and commits event, begun when the frame started, if a recording wants it
+    public void commit(FrameEvent event)
+    {
+        event.end();
+        if(!event.shouldCommit())
+        {
+            return;
+        }
+        event.cull = this.stageNanos[CULL];
+        event.sort = this.stageNanos[SORT];
+        event.transform = this.stageNanos[TRANSFORM];
+        event.setup = this.stageNanos[SETUP];
+        event.bin = this.stageNanos[BIN];
+        event.raster = this.stageNanos[RASTER];
+        event.shade = this.stageNanos[SHADE];
+        event.objectsSubmitted = this.objectsSubmitted;
+        event.objectsCulled = this.objectsCulled;
+        event.triangles = this.triangles;
+        event.trianglesBackFacing = this.trianglesBackFacing;
+        event.trianglesSavedByLod = this.trianglesSavedByLod;
+        event.trianglesOccluded = this.trianglesOccluded;
+        event.pixelsTested = this.pixelsTested;
+        event.pixelsWritten = this.pixelsWritten;
+        event.lines = this.lines;
+        event.overdraw = overdraw();
+        event.commit();
+    }
+}
+
+@Name("engine.Frame")
+@Label("Frame")
+@Category("Engine")
+@Description("One frame drawn by the renderer")
+class FrameEvent extends jdk.jfr.Event
+{
+    @Timespan @Label("Cull") long cull;
+    @Timespan @Label("Sort") long sort;
+    @Timespan @Label("Transform") long transform;
+    @Timespan @Label("Setup") long setup;
+    @Timespan @Label("Bin") long bin;
+    @Timespan @Label("Raster") long raster;
+    @Timespan @Label("Shade") long shade;
+    @Label("Objects Submitted") int objectsSubmitted;
+    @Label("Objects Culled") int objectsCulled;
+    @Label("Triangles") int triangles;
+    @Label("Triangles Back-Facing") int trianglesBackFacing;
+    @Label("Triangles Saved By LOD") long trianglesSavedByLod;
+    @Label("Triangles Occluded") int trianglesOccluded;
+    @Label("Pixels Tested") long pixelsTested;
+    @Label("Pixels Written") long pixelsWritten;
+    @Label("Lines") long lines;
+    @Label("Overdraw") double overdraw;
+}
+
+@Name("engine.Present")
+@Label("Present")
+@Category("Engine")
+@Description("Blit of a finished frame on the EDT")
+class PresentEvent extends jdk.jfr.Event
+{
+}
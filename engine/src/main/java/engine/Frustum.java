@@ -0,0 +1,155 @@
+package engine;
+
+// Six inward-facing planes a*x + b*y + c*z + d >= 0, normalized so the left side is a distance
+class Frustum
+{
+    static final int LEFT = 0;
+    static final int RIGHT = 1;
+    static final int TOP = 2;
+    static final int BOTTOM = 3;
+    static final int NEAR = 4;
+    static final int FAR = 5;
+
+    // What classifyBox finds
+    static final int OUTSIDE = 0;
+    static final int INTERSECTS = 1;
+    static final int INSIDE = 2;
+
+    final double[] planes = new double[6 * 4];
+
+    public void setPlane(int plane, double a, double b, double c, double d)
+    {
+        double mag = Math.sqrt(a * a + b * b + c * c);
+        int o = plane * 4;
+        this.planes[o] = a / mag;
+        this.planes[o + 1] = b / mag;
+        this.planes[o + 2] = c / mag;
+        this.planes[o + 3] = d / mag;
+    }
+
+    // Sphere test: true when the sphere is completely outside one of the planes
+    public boolean cullsSphere(double x, double y, double z, double radius)
+    {
+        double[] p = this.planes;
+        for(int o = 0; o < p.length; o += 4)
+        {
+            if(p[o] * x + p[o + 1] * y + p[o + 2] * z + p[o + 3] < -radius)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    // Box test for a box given by center and half extents
+    public boolean cullsBox(double cx, double cy, double cz, double ex, double ey, double ez)
+    {
+        double[] p = this.planes;
+        for(int o = 0; o < p.length; o += 4)
+        {
+            double r = Math.abs(p[o]) * ex + Math.abs(p[o + 1]) * ey + Math.abs(p[o + 2]) * ez;
+            if(p[o] * cx + p[o + 1] * cy + p[o + 2] * cz + p[o + 3] < -r)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    // Box test that also tells a box completely inside every plane from one straddling a plane
+    public int classifyBox(double cx, double cy, double cz, double ex, double ey, double ez)
+    {
+        double[] p = this.planes;
+        int result = INSIDE;
+        for(int o = 0; o < p.length; o += 4)
+        {
+            double r = Math.abs(p[o]) * ex + Math.abs(p[o + 1]) * ey + Math.abs(p[o + 2]) * ez;
+            double d = p[o] * cx + p[o + 1] * cy + p[o + 2] * cz + p[o + 3];
+            if(d < -r)
+            {
+                return OUTSIDE;
+            }
+            if(d < r)
+            {
+                result = INTERSECTS;
+            }
+        }
+        return result;
+    }
+    // Culls object-space bounds placed by model: world sphere first, then the world AABB of the box
+    public boolean culls(Bounds bounds, Mat4 model)
+    {
+        double[] m = model.m;
+        double cx = bounds.centerX, cy = bounds.centerY, cz = bounds.centerZ;
+        double wx = m[0] * cx + m[1] * cy + m[2] * cz + m[3];
+        double wy = m[4] * cx + m[5] * cy + m[6] * cz + m[7];
+        double wz = m[8] * cx + m[9] * cy + m[10] * cz + m[11];
+
+        // Largest axis scale of the model's 3x3 bounds how far the sphere can grow
+        double sx = m[0] * m[0] + m[4] * m[4] + m[8] * m[8];
+        double sy = m[1] * m[1] + m[5] * m[5] + m[9] * m[9];
+        double sz = m[2] * m[2] + m[6] * m[6] + m[10] * m[10];
+        double radius = bounds.radius * Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+        if(cullsSphere(wx, wy, wz, radius))
+        {
+            return true;
+        }
+
+        double hx = bounds.halfX, hy = bounds.halfY, hz = bounds.halfZ;
+        double ex = Math.abs(m[0]) * hx + Math.abs(m[1]) * hy + Math.abs(m[2]) * hz;
+        double ey = Math.abs(m[4]) * hx + Math.abs(m[5]) * hy + Math.abs(m[6]) * hz;
+        double ez = Math.abs(m[8]) * hx + Math.abs(m[9]) * hy + Math.abs(m[10]) * hz;
+        return cullsBox(wx, wy, wz, ex, ey, ez);
+    }
+}
+
+// Object-space bounding box and a bounding sphere around the box center, computed once per geometry
+class Bounds
+{
+    final double centerX;
+    final double centerY;
+    final double centerZ;
+    final double halfX;
+    final double halfY;
+    final double halfZ;
+    final double radius;
+
+    public Bounds(VertexBuffer vertices)
+    {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < vertices.size; i++)
+        {
+            minX = Math.min(minX, vertices.x[i]);
+            minY = Math.min(minY, vertices.y[i]);
+            minZ = Math.min(minZ, vertices.z[i]);
+            maxX = Math.max(maxX, vertices.x[i]);
+            maxY = Math.max(maxY, vertices.y[i]);
+            maxZ = Math.max(maxZ, vertices.z[i]);
+        }
+        this.centerX = (minX + maxX) / 2;
+        this.centerY = (minY + maxY) / 2;
+        this.centerZ = (minZ + maxZ) / 2;
+        this.halfX = (maxX - minX) / 2;
+        this.halfY = (maxY - minY) / 2;
+        this.halfZ = (maxZ - minZ) / 2;
+
+        double r2 = 0;
+        for(int i = 0; i < vertices.size; i++)
+        {
+            double dx = vertices.x[i] - this.centerX;
+            double dy = vertices.y[i] - this.centerY;
+            double dz = vertices.z[i] - this.centerZ;
+            r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+        }
+        this.radius = Math.sqrt(r2);
+    }
+    public Bounds(double centerX, double centerY, double centerZ, double halfX, double halfY, double halfZ, double radius)
+    {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.halfX = halfX;
+        this.halfY = halfY;
+        this.halfZ = halfZ;
+        this.radius = radius;
+    }
+}
@@ -0,0 +1,61 @@
+package engine;
+
+// The demo scene: instances of one mesh, cubes unless told otherwise, laid out row by row on a
+// square grid SPACING apart and all spinning about their own Y axis by the same angle. Each
+// instance is drawn at the level of detail its size on screen calls for, and culled through a
+// Bvh built once the grid is laid out.
+class GridScene
+{
+    static final double SPACING = 5;
+
+    final LodMesh lods;
+    final Instance[] cubes;
+    final int side;
+    final Bvh index;
+    private final Mat4 rotation = new Mat4();
+    private final Mat4 translation = new Mat4();
+    private final Mat4 model = new Mat4();
+
+    public GridScene(int count)
+    {
+        this(LodMesh.build(Mesh.CUBE), count);
+    }
+    public GridScene(LodMesh lods, int count)
+    {
+        this.lods = lods;
+        this.cubes = new Instance[count];
+        for(int i = 0; i < count; i++)
+        {
+            this.cubes[i] = new Instance();
+        }
+        // 100 cubes give the original 10 x 10 grid
+        this.side = Math.max(1, (int) Math.ceil(Math.sqrt(count)));
+        this.rotation.setRotateY(0);
+        for(int i = 0; i < count; i++)
+        {
+            place(i);
+        }
+        this.index = new Bvh(lods.levels[0].bounds, this.cubes, count);
+    }
+
+    // Places every cube on its grid cell, rotated by angle
+    public void animate(double angle)
+    {
+        this.rotation.setRotateY(angle);
+        for(int i = 0; i < this.cubes.length; i++)
+        {
+            place(i);
+            this.index.update(i);
+        }
+    }
+    private void place(int i)
+    {
+        this.translation.setTransform((i / this.side) * SPACING, 3, (i % this.side) * SPACING);
+        this.cubes[i].setModel(Mat4.mulInto(this.model, this.translation, this.rotation));
+    }
+
+    public void draw(Renderer renderer, FrameBuffer frame, DepthBuffer depth, Camera camera, double scale, int center)
+    {
+        renderer.drawInstances(frame, depth, this.lods, this.index, camera, scale, center);
+    }
+}
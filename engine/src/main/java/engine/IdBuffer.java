@@ -0,0 +1,71 @@
+package engine;
+
+// What was drawn at every pixel of a frame, for picking. The rasterizer writes the slot of a
+// triangle in the frame's TriangleBuffer into ids wherever it writes that triangle's color, in
+// the same depth test, so a pixel's id is the surface that is actually visible there. When the
+// frame is done the renderer copies each slot's instance and mesh triangle here, and a lookup
+// is two array reads.
+class IdBuffer
+{
+    static final int NONE = -1;
+
+    final int[] ids;
+    final int width;
+    final int height;
+    private int[] instance = new int[0];
+    private int[] triangle = new int[0];
+
+    public IdBuffer(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.ids = new int[width * height];
+        clear();
+    }
+    public void clear()
+    {
+        java.util.Arrays.fill(this.ids, NONE);
+    }
+
+    // Takes over where the slots of the frame's triangles came from
+    public void resolve(TriangleBuffer triangles)
+    {
+        if(this.instance.length < triangles.size)
+        {
+            this.instance = new int[triangles.color.length];
+            this.triangle = new int[triangles.color.length];
+        }
+        System.arraycopy(triangles.instance, 0, this.instance, 0, triangles.size);
+        System.arraycopy(triangles.face, 0, this.triangle, 0, triangles.size);
+    }
+
+    // Instance and triangle drawn at (x, y), or null where nothing was or outside the buffer
+    public Pick pick(int x, int y)
+    {
+        if(x < 0 || y < 0 || x >= this.width || y >= this.height)
+        {
+            return null;
+        }
+        int slot = this.ids[y * this.width + x];
+        return slot == NONE ? null : new Pick(this.instance[slot], this.triangle[slot]);
+    }
+}
+
+class Pick
+{
+    // Index into the instances the frame was drawn from
+    final int instance;
+    // Triangle of the mesh level of detail the instance was drawn at
+    final int triangle;
+
+    public Pick(int instance, int triangle)
+    {
+        this.instance = instance;
+        this.triangle = triangle;
+    }
+    @Override
+    public String toString()
+    {
+        return "instance " + this.instance + " triangle " + this.triangle;
+    }
+}
@@ -0,0 +1,94 @@
+package engine;
+
+// One placement of a shared Mesh. Holds only the top three rows of its affine model matrix as
+// floats (the bottom row is always 0 0 0 1) and the level of detail it was last drawn at, so an
+// instance costs 64 bytes with its object header. What is derived from the model, such as the
+// NormalMatrix, is worked out into scratch when it is needed.
+class Instance
+{
+    float m00, m01, m02, m03;
+    float m10, m11, m12, m13;
+    float m20, m21, m22, m23;
+    // Kept by the Renderer between frames for LodMesh hysteresis
+    byte lod;
+
+    public Instance()
+    {
+        m00 = 1;
+        m11 = 1;
+        m22 = 1;
+    }
+    public Instance setModel(Mat4 model)
+    {
+        double[] m = model.m;
+        assert m[12] == 0 && m[13] == 0 && m[14] == 0 && m[15] == 1;
+        m00 = (float) m[0]; m01 = (float) m[1]; m02 = (float) m[2]; m03 = (float) m[3];
+        m10 = (float) m[4]; m11 = (float) m[5]; m12 = (float) m[6]; m13 = (float) m[7];
+        m20 = (float) m[8]; m21 = (float) m[9]; m22 = (float) m[10]; m23 = (float) m[11];
+        return this;
+    }
+    public Mat4 getModel(Mat4 dst)
+    {
+        double[] m = dst.m;
+        m[0] = m00; m[1] = m01; m[2] = m02; m[3] = m03;
+        m[4] = m10; m[5] = m11; m[6] = m12; m[7] = m13;
+        m[8] = m20; m[9] = m21; m[10] = m22; m[11] = m23;
+        m[12] = 0; m[13] = 0; m[14] = 0; m[15] = 1;
+        return dst;
+    }
+}
+
+// The normal matrix of one instance's model, worked out for each instance as it is set up. Its
+// rows are the cofactors of the model's 3x3, which turn normals with the surfaces they belong to
+// even under scaling. Triangles are wound clockwise seen from outside, so the mesh's face normals
+// point in and the matrix turns them around, and once more under a mirroring model. When the 3x3
+// is a rotation times a uniform scale it is also divided by the square of that scale, so unit
+// normals come out unit and unitNormals is set. Its transpose times inverseScale is the inverse
+// of the 3x3. A model that flattens space has neither, and set leaves the matrix alone.
+class NormalMatrix
+{
+    double n00, n01, n02;
+    double n10, n11, n12;
+    double n20, n21, n22;
+    double inverseScale;
+    boolean unitNormals;
+
+    // Returns false, with nothing set, when the model's 3x3 is singular
+    public boolean set(Instance p)
+    {
+        double c00 = (double) p.m11 * p.m22 - (double) p.m12 * p.m21;
+        double c01 = (double) p.m12 * p.m20 - (double) p.m10 * p.m22;
+        double c02 = (double) p.m10 * p.m21 - (double) p.m11 * p.m20;
+        double c10 = (double) p.m02 * p.m21 - (double) p.m01 * p.m22;
+        double c11 = (double) p.m00 * p.m22 - (double) p.m02 * p.m20;
+        double c12 = (double) p.m01 * p.m20 - (double) p.m00 * p.m21;
+        double c20 = (double) p.m01 * p.m12 - (double) p.m02 * p.m11;
+        double c21 = (double) p.m02 * p.m10 - (double) p.m00 * p.m12;
+        double c22 = (double) p.m00 * p.m11 - (double) p.m01 * p.m10;
+        double det = p.m00 * c00 + p.m01 * c01 + p.m02 * c02;
+
+        // Columns of equal length at right angles, up to float rounding
+        double sx = (double) p.m00 * p.m00 + (double) p.m10 * p.m10 + (double) p.m20 * p.m20;
+        double sy = (double) p.m01 * p.m01 + (double) p.m11 * p.m11 + (double) p.m21 * p.m21;
+        double sz = (double) p.m02 * p.m02 + (double) p.m12 * p.m12 + (double) p.m22 * p.m22;
+        double xy = (double) p.m00 * p.m01 + (double) p.m10 * p.m11 + (double) p.m20 * p.m21;
+        double yz = (double) p.m01 * p.m02 + (double) p.m11 * p.m12 + (double) p.m21 * p.m22;
+        double zx = (double) p.m02 * p.m00 + (double) p.m12 * p.m10 + (double) p.m22 * p.m20;
+        // The determinant is at most the product of the column lengths, and a scale of zero on any
+        // axis brings it to zero. Also false for NaN.
+        if(!(det * det > 1e-24 * sx * sy * sz))
+        {
+            return false;
+        }
+        double tolerance = 1e-5 * sx;
+        this.unitNormals = Math.abs(sy - sx) <= tolerance && Math.abs(sz - sx) <= tolerance
+                && Math.abs(xy) <= tolerance && Math.abs(yz) <= tolerance && Math.abs(zx) <= tolerance;
+        double scale = (det < 0 ? 1 : -1) / (this.unitNormals ? sx : 1);
+
+        this.n00 = c00 * scale; this.n01 = c01 * scale; this.n02 = c02 * scale;
+        this.n10 = c10 * scale; this.n11 = c11 * scale; this.n12 = c12 * scale;
+        this.n20 = c20 * scale; this.n21 = c21 * scale; this.n22 = c22 * scale;
+        this.inverseScale = 1 / (scale * det);
+        return true;
+    }
+}
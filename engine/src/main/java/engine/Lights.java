@@ -0,0 +1,112 @@
+package engine;
+
+// Directional and point lights for flat shading. Each kind is kept as parallel arrays of
+// doubles, so lighting a surface is one tight loop over each and allocates nothing. Positions,
+// directions and normals are in world space; a direction is the way the light travels. The
+// lights' contributions add up, Lambert's cosine times intensity, a point light's fading to
+// nothing at its range, and the sum is clamped to 1. Changed between frames only, by the thread
+// that draws.
+class Lights
+{
+    private double[] directionX = new double[1], directionY = new double[1], directionZ = new double[1];
+    private double[] directionIntensity = new double[1];
+    private int directionalCount;
+    private double[] pointX = new double[0], pointY = new double[0], pointZ = new double[0];
+    private double[] pointIntensity = new double[0], pointRange = new double[0];
+    private int pointCount;
+
+    // The lighting the engine started with: one light shining along +z, the way the starting
+    // camera looks
+    public static Lights standard()
+    {
+        Lights lights = new Lights();
+        lights.addDirectional(0, 0, 1, 1);
+        return lights;
+    }
+
+    public void clear()
+    {
+        this.directionalCount = 0;
+        this.pointCount = 0;
+    }
+    // Returns the light's index among the directional lights
+    public int addDirectional(double dx, double dy, double dz, double intensity)
+    {
+        double mag = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        assert mag > 0;
+        int i = this.directionalCount;
+        if(i == this.directionX.length)
+        {
+            this.directionX = java.util.Arrays.copyOf(this.directionX, i * 2);
+            this.directionY = java.util.Arrays.copyOf(this.directionY, i * 2);
+            this.directionZ = java.util.Arrays.copyOf(this.directionZ, i * 2);
+            this.directionIntensity = java.util.Arrays.copyOf(this.directionIntensity, i * 2);
+        }
+        this.directionX[i] = dx / mag;
+        this.directionY[i] = dy / mag;
+        this.directionZ[i] = dz / mag;
+        this.directionIntensity[i] = intensity;
+        return this.directionalCount++;
+    }
+    // Returns the light's index among the point lights
+    public int addPoint(double x, double y, double z, double intensity, double range)
+    {
+        assert range > 0;
+        int i = this.pointCount;
+        if(i == this.pointX.length)
+        {
+            int capacity = Math.max(4, i * 2);
+            this.pointX = java.util.Arrays.copyOf(this.pointX, capacity);
+            this.pointY = java.util.Arrays.copyOf(this.pointY, capacity);
+            this.pointZ = java.util.Arrays.copyOf(this.pointZ, capacity);
+            this.pointIntensity = java.util.Arrays.copyOf(this.pointIntensity, capacity);
+            this.pointRange = java.util.Arrays.copyOf(this.pointRange, capacity);
+        }
+        this.pointX[i] = x;
+        this.pointY[i] = y;
+        this.pointZ[i] = z;
+        this.pointIntensity[i] = intensity;
+        this.pointRange[i] = range;
+        return this.pointCount++;
+    }
+    public void movePoint(int light, double x, double y, double z)
+    {
+        this.pointX[light] = x;
+        this.pointY[light] = y;
+        this.pointZ[light] = z;
+    }
+
+    // Whether the light on a surface depends on where it is, not only on which way it faces
+    public boolean hasPointLights()
+    {
+        return this.pointCount > 0;
+    }
+
+    // Light reaching a surface at (x, y, z) with unit normal (nx, ny, nz), from 0 to 1
+    public double intensity(double nx, double ny, double nz, double x, double y, double z)
+    {
+        double sum = 0;
+        for(int i = 0; i < this.directionalCount; i++)
+        {
+            double cos = -(nx * this.directionX[i] + ny * this.directionY[i] + nz * this.directionZ[i]);
+            sum += Math.max(0, cos) * this.directionIntensity[i];
+        }
+        for(int i = 0; i < this.pointCount; i++)
+        {
+            double lx = this.pointX[i] - x, ly = this.pointY[i] - y, lz = this.pointZ[i] - z;
+            double distance = Math.sqrt(lx * lx + ly * ly + lz * lz);
+            double cos = nx * lx + ny * ly + nz * lz;
+            if(cos > 0 && distance < this.pointRange[i])
+            {
+                sum += cos / distance * (1 - distance / this.pointRange[i]) * this.pointIntensity[i];
+            }
+        }
+        return Math.min(sum, 1);
+    }
+    // Gray flat color of such a surface
+    public int shade(double nx, double ny, double nz, double x, double y, double z)
+    {
+        int colorVal = (int) (intensity(nx, ny, nz, x, y, z) * 220) + 35;
+        return FrameBuffer.rgb(colorVal, colorVal, colorVal);
+    }
+}
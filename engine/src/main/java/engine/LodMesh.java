@@ -0,0 +1,76 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A mesh and progressively simplified versions of it, levels[0] being the original. A level is
+// good enough while the object's bounding sphere is at least minSize[level] pixels across on
+// screen, which gives every triangle about PIXELS_PER_TRIANGLE pixels of that square.
+class LodMesh
+{
+    static final double PIXELS_PER_TRIANGLE = 4;
+    // Each level keeps about this share of the triangles of the one before
+    static final double REDUCTION = 0.5;
+    static final int MIN_TRIANGLES = 4;
+    static final int MAX_LEVELS = 8;
+    // A level switch needs the size to pass its threshold by this fraction, so objects sitting
+    // right at one do not flip between two levels every frame
+    static final double HYSTERESIS = 0.15;
+
+    final Mesh[] levels;
+    final double[] minSize;
+
+    public LodMesh(Mesh... levels)
+    {
+        this.levels = levels;
+        this.minSize = new double[levels.length];
+        for(int i = 0; i < levels.length - 1; i++)
+        {
+            this.minSize[i] = Math.sqrt(PIXELS_PER_TRIANGLE * levels[i].triangleCount);
+        }
+    }
+
+    // Simplifies mesh level by level until a level would drop below MIN_TRIANGLES or the
+    // simplifier stops making real progress. All levels come out of one simplifier run, each
+    // taken where the collapses reach its triangle count, so the error quadrics keep measuring
+    // against the original surface.
+    public static LodMesh build(Mesh mesh)
+    {
+        List<Mesh> levels = new ArrayList<>();
+        levels.add(mesh);
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        int triangles = mesh.triangleCount;
+        while(levels.size() < MAX_LEVELS)
+        {
+            int target = (int) (triangles * REDUCTION);
+            if(target < MIN_TRIANGLES)
+            {
+                break;
+            }
+            simplifier.run(target);
+            if(simplifier.getTriangleCount() > triangles * (1 + REDUCTION) / 2)
+            {
+                break;
+            }
+            Mesh next = simplifier.toMesh();
+            levels.add(next);
+            triangles = next.triangleCount;
+        }
+        return new LodMesh(levels.toArray(new Mesh[0]));
+    }
+
+    // Level to draw at for an object size pixels across that was drawn at current last frame
+    public int select(int current, double size)
+    {
+        int level = Math.min(current, this.levels.length - 1);
+        while(level > 0 && size >= this.minSize[level - 1] * (1 + HYSTERESIS))
+        {
+            level--;
+        }
+        while(level < this.levels.length - 1 && size < this.minSize[level] * (1 - HYSTERESIS))
+        {
+            level++;
+        }
+        return level;
+    }
+}
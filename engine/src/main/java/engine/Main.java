@@ -0,0 +1,223 @@
+package engine;
+
+import javax.swing.*;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+public class Main extends JPanel
+{
+    private final GridScene scene;
+    private double angle = 0;
+    private static Camera camera;
+    private final DepthBuffer depth;
+    private final Renderer renderer = new Renderer();
+    private final RenderLoop loop;
+    // Stats overlay, toggled with H; only available when FrameStats.ENABLED
+    private volatile boolean showStats = true;
+    // What was under the cursor at the last click
+    private volatile Pick picked;
+    // Whether the renderer shades through a visibility buffer, toggled with V, and draws a
+    // wireframe, toggled with F, with the diagonals of flat faces toggled with G; render thread only
+    private boolean visibilityBuffer;
+    private boolean wireframe;
+    private boolean flatDiagonals;
+    public Main()
+    {
+        this.scene = new GridScene(100);
+        this.depth = new DepthBuffer(500, 500);
+        camera = new Camera( 90, 1, 0.01, 500);
+        camera.setPosition(0, 0, 10);
+        this.loop = new RenderLoop(500, 500, frame -> {
+            angle += Math.toRadians(3);
+            renderFrame(frame);
+        }, this::repaint);
+        this.loop.setPicking(true);
+        addMouseListener(new MouseAdapter() {
+            public void mousePressed(MouseEvent e)
+            {
+                picked = pick(e.getX(), e.getY());
+                repaint();
+            }
+        });
+    }
+
+    // Instance and triangle under the panel point (x, y) in the frame on screen, or null
+    public Pick pick(int x, int y)
+    {
+        return loop.pick(x - 50, y - 50);
+    }
+    public void paint(Graphics g)
+    {
+        loop.present(g, 50, 50, this);
+        if(FrameStats.ENABLED && showStats)
+        {
+            drawStats(g, 56, 64);
+        }
+        Pick pick = picked;
+        if(pick != null)
+        {
+            g.setColor(Color.GREEN);
+            g.drawString(pick.toString(), 56, 540);
+        }
+    }
+    private void drawStats(Graphics g, int x, int y)
+    {
+        FrameStats stats = renderer.getStats();
+        if(stats == null)
+        {
+            return;
+        }
+        long[] stage = stats.stageNanos;
+        String[] lines = {
+                String.format("frame %.2f ms  present %.2f ms", loop.getFrameNanos() / 1e6, loop.getPresentNanos() / 1e6),
+                String.format("cull %.2f  sort %.2f  transform %.2f  setup %.2f  bin %.2f  raster %.2f  shade %.2f ms",
+                        stage[FrameStats.CULL] / 1e6, stage[FrameStats.SORT] / 1e6,
+                        stage[FrameStats.TRANSFORM] / 1e6, stage[FrameStats.SETUP] / 1e6,
+                        stage[FrameStats.BIN] / 1e6, stage[FrameStats.RASTER] / 1e6, stage[FrameStats.SHADE] / 1e6),
+                String.format("objects %d  culled %d", stats.objectsSubmitted, stats.objectsCulled),
+                String.format("triangles %d  back-facing %d  occluded %d  saved by LOD %d", stats.triangles,
+                        stats.trianglesBackFacing, stats.trianglesOccluded, stats.trianglesSavedByLod),
+                String.format("pixels tested %d  written %d  overdraw %.2f  lines %d",
+                        stats.pixelsTested, stats.pixelsWritten, stats.overdraw(), stats.lines)
+        };
+        g.setColor(Color.GREEN);
+        for(int i = 0; i < lines.length; i++)
+        {
+            g.drawString(lines[i], x, y + i * 14);
+        }
+    }
+    private Vector3 calculateCenter(Vector3[] vertices)
+    {
+        double sumX = 0, sumY = 0, sumZ = 0;
+        int numVertices = vertices.length;
+        for(Vector3 v : vertices)
+        {
+            sumX += v.x;
+            sumY += v.y;
+            sumZ += v.z;
+        }
+        return new Vector3(sumX / numVertices, sumY / numVertices, sumZ / numVertices);
+    }
+
+
+    // Runs on the render thread
+    private void toggleVisibilityBuffer()
+    {
+        visibilityBuffer = !visibilityBuffer;
+        renderer.setVisibilityBuffer(visibilityBuffer);
+    }
+    // Runs on the render thread
+    private void toggleWireframe(boolean diagonals)
+    {
+        if(diagonals)
+        {
+            flatDiagonals = !flatDiagonals;
+        }
+        else
+        {
+            wireframe = !wireframe;
+        }
+        renderer.setWireframe(wireframe, flatDiagonals);
+    }
+    // Runs on the render thread
+    private void renderFrame(FrameBuffer frame)
+    {
+        frame.clear(0x000000);
+        depth.clear();
+
+        double scale = 500;
+        int screenWidth = 500;
+        int center = screenWidth / 2;
+
+        scene.animate(angle);
+        scene.draw(renderer, frame, depth, camera, scale, center);
+    }
+
+    // Optional arguments pick the frame pacing: "fixed <frames per second>" or
+    // "budget <milliseconds per frame>"; without them frames are uncapped. Run with
+    // -Dengine.stats=true for the stats overlay and the engine.Frame and engine.Present JFR events,
+    // and with --add-modules jdk.incubator.vector for the vector transform and fill (see Simd).
+    public static void main(String[] args)
+    {
+        Main main = new Main();
+        if(args.length >= 2 && args[0].equals("fixed"))
+        {
+            main.loop.setPacing(RenderLoop.Pacing.FIXED_RATE, (long) (1e9 / Double.parseDouble(args[1])));
+        }
+        else if(args.length >= 2 && args[0].equals("budget"))
+        {
+            main.loop.setPacing(RenderLoop.Pacing.BUDGET, (long) (Double.parseDouble(args[1]) * 1e6));
+        }
+
+        JFrame f = new JFrame();
+        f.setSize(600,600);
+        f.getContentPane().add(main);
+        f.setVisible(true);
+        f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        f.addKeyListener(new KeyAdapter() {
+            public void keyPressed(KeyEvent e)
+            {
+                // The camera belongs to the render thread, which applies the move before its next frame
+                int key = e.getKeyCode();
+                if(key == KeyEvent.VK_H)
+                {
+                    main.showStats = !main.showStats;
+                    main.repaint();
+                    return;
+                }
+                if(key == KeyEvent.VK_V)
+                {
+                    main.loop.post(main::toggleVisibilityBuffer);
+                    return;
+                }
+                if(key == KeyEvent.VK_F || key == KeyEvent.VK_G)
+                {
+                    main.loop.post(() -> main.toggleWireframe(key == KeyEvent.VK_G));
+                    return;
+                }
+                main.loop.post(() -> move(key));
+            }
+        });
+        main.loop.start();
+    }
+    private static void move(int key)
+    {
+        switch(key) {
+            case KeyEvent.VK_W:
+                camera.moveForward(-1);
+                break;
+            case KeyEvent.VK_S:
+                camera.moveForward(1);
+                break;
+            case KeyEvent.VK_D:
+                camera.moveRight(-1);
+                break;
+            case KeyEvent.VK_A:
+                camera.moveRight(1);
+                break;
+            case KeyEvent.VK_SPACE:
+                camera.moveUp(1);
+                break;
+            case KeyEvent.VK_K:
+                camera.moveUp(-1);
+                break;
+            case KeyEvent.VK_UP:
+                camera.rotateX(-10);
+                break;
+            case KeyEvent.VK_DOWN:
+                camera.rotateX(10);
+                break;
+            case KeyEvent.VK_LEFT:
+                camera.rotateY(-10);
+                break;
+            case KeyEvent.VK_RIGHT:
+                camera.rotateY(10);
+                break;
+        }
+    }
+}
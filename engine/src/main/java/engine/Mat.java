@@ -1,4 +1,4 @@
-import java.lang.Math;
+package engine;
 
 class Vector2
 {
@@ -159,18 +159,193 @@ class Matrix
         return matrix;
     }
 }
+// Flat 4-vector used by the Mat4 hot paths, always owned by the caller
+class Vec4
+{
+    double x;
+    double y;
+    double z;
+    double w;
+
+    public Vec4()
+    {
+    }
+    public Vec4(double x, double y, double z, double w)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+    }
+    public Vec4 set(double x, double y, double z, double w)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+}
+
+// Row-major 4x4 matrix in a flat double[16], m[row * 4 + col].
+// Every operation writes into storage the caller already owns, so nothing here allocates per frame.
+class Mat4
+{
+    final double[] m = new double[16];
+
+    public Mat4()
+    {
+        setIdentity();
+    }
+    public double get(int row, int col)
+    {
+        return m[row * 4 + col];
+    }
+    public void set(int row, int col, double value)
+    {
+        m[row * 4 + col] = value;
+    }
+    public Mat4 set(Mat4 other)
+    {
+        System.arraycopy(other.m, 0, m, 0, 16);
+        return this;
+    }
+    public Mat4 set(Matrix other)
+    {
+        assert other.row == 4 && other.col == 4;
+        for(int i = 0; i < 4; ++i)
+        {
+            for(int j = 0; j < 4; ++j)
+            {
+                m[i * 4 + j] = other.matrix[i][j];
+            }
+        }
+        return this;
+    }
+    public Mat4 setIdentity()
+    {
+        java.util.Arrays.fill(m, 0);
+        m[0] = 1;
+        m[5] = 1;
+        m[10] = 1;
+        m[15] = 1;
+        return this;
+    }
+    public Mat4 setRotateX(double angle)
+    {
+        double radian = Math.toRadians(angle);
+        double cos = Math.cos(radian);
+        double sin = Math.sin(radian);
+        setIdentity();
+        m[5] = cos;
+        m[6] = -sin;
+        m[9] = sin;
+        m[10] = cos;
+        return this;
+    }
+    public Mat4 setRotateY(double angle)
+    {
+        double radian = Math.toRadians(angle);
+        double cos = Math.cos(radian);
+        double sin = Math.sin(radian);
+        setIdentity();
+        m[0] = cos;
+        m[2] = sin;
+        m[8] = -sin;
+        m[10] = cos;
+        return this;
+    }
+    public Mat4 setRotateZ(double angle)
+    {
+        double radian = Math.toRadians(angle);
+        double cos = Math.cos(radian);
+        double sin = Math.sin(radian);
+        setIdentity();
+        m[0] = cos;
+        m[1] = -sin;
+        m[4] = sin;
+        m[5] = cos;
+        return this;
+    }
+    public Mat4 setScale(double x, double y, double z)
+    {
+        setIdentity();
+        m[0] = x;
+        m[5] = y;
+        m[10] = z;
+        return this;
+    }
+    public Mat4 setTransform(double x, double y, double z)
+    {
+        setIdentity();
+        m[3] = x;
+        m[7] = y;
+        m[11] = z;
+        return this;
+    }
+
+    // dst = a * b. dst may be a or b: b is read up front and each row of a before that row is written.
+    public static Mat4 mulInto(Mat4 dst, Mat4 a, Mat4 b)
+    {
+        double[] A = a.m;
+        double[] B = b.m;
+        double[] D = dst.m;
+        double b00 = B[0], b01 = B[1], b02 = B[2], b03 = B[3];
+        double b10 = B[4], b11 = B[5], b12 = B[6], b13 = B[7];
+        double b20 = B[8], b21 = B[9], b22 = B[10], b23 = B[11];
+        double b30 = B[12], b31 = B[13], b32 = B[14], b33 = B[15];
+        for(int i = 0; i < 16; i += 4)
+        {
+            double a0 = A[i], a1 = A[i + 1], a2 = A[i + 2], a3 = A[i + 3];
+            D[i]     = a0 * b00 + a1 * b10 + a2 * b20 + a3 * b30;
+            D[i + 1] = a0 * b01 + a1 * b11 + a2 * b21 + a3 * b31;
+            D[i + 2] = a0 * b02 + a1 * b12 + a2 * b22 + a3 * b32;
+            D[i + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3 * b33;
+        }
+        return dst;
+    }
+    // dst = m * (x, y, z, 1)
+    public static Vec4 transformPoint(Vec4 dst, Mat4 m, double x, double y, double z)
+    {
+        double[] M = m.m;
+        dst.x = M[0] * x + M[1] * y + M[2] * z + M[3];
+        dst.y = M[4] * x + M[5] * y + M[6] * z + M[7];
+        dst.z = M[8] * x + M[9] * y + M[10] * z + M[11];
+        dst.w = M[12] * x + M[13] * y + M[14] * z + M[15];
+        return dst;
+    }
+    // dst = m * v, dst may be v
+    public static Vec4 transform(Vec4 dst, Mat4 m, Vec4 v)
+    {
+        double[] M = m.m;
+        double x = v.x, y = v.y, z = v.z, w = v.w;
+        dst.x = M[0] * x + M[1] * y + M[2] * z + M[3] * w;
+        dst.y = M[4] * x + M[5] * y + M[6] * z + M[7] * w;
+        dst.z = M[8] * x + M[9] * y + M[10] * z + M[11] * w;
+        dst.w = M[12] * x + M[13] * y + M[14] * z + M[15] * w;
+        return dst;
+    }
+}
 class Camera
 {
     double fov;
     double aspect;
     double near;
     double far;
-    Matrix perspective;
+    Mat4 perspective;
     Vector3 position;
     Vector3 forward;
     Vector3 up;
     Vector3 right;
 
+    // Bumped by every move and rotation; the view and view-projection are only rebuilt
+    // when it differs from the version they were built at
+    private int version;
+    private int cachedVersion = -1;
+    private final Mat4 view = new Mat4();
+    private final Mat4 viewProjection = new Mat4();
+    private final Mat4 frustumProjection = new Mat4();
+
     public Camera(double fov, double aspect, double near, double far)
     {
         this.fov = fov;
@@ -185,21 +360,22 @@ class Camera
         this.perspective = camProject();
     }
 
-    public Matrix camProject()
+    public Mat4 camProject()
     {
-        Matrix proj = new Matrix(4, 4);
+        Mat4 proj = new Mat4();
         double f = 1.0 / Math.tan(Math.toRadians(this.fov) / 2);
 
-        proj.matrix[0][0] = f / this.aspect;
-        proj.matrix[1][1] = f;
-        proj.matrix[2][2] = (far + near) / (near - far);
-        proj.matrix[2][3] = (2 * far * near) / (near - far);
-        proj.matrix[3][2] = - 1;
-        proj.matrix[3][3] = 0;
+        proj.set(0, 0, f / this.aspect);
+        proj.set(1, 1, f);
+        proj.set(2, 2, (far + near) / (near - far));
+        proj.set(2, 3, (2 * far * near) / (near - far));
+        proj.set(3, 2, - 1);
+        proj.set(3, 3, 0);
         return proj;
     }
     public void rotateY(double angle)
     {
+        this.version++;
         double radians = Math.toRadians(angle);
         double cos = Math.cos(radians);
         double sin = Math.sin(radians);
@@ -218,6 +394,7 @@ class Camera
 
     public void rotateX(double angle)
     {
+        this.version++;
         double radians = Math.toRadians(angle);
         double cos = Math.cos(radians);
         double sin = Math.sin(radians);
@@ -234,30 +411,108 @@ class Camera
         Mat.vecNormalize(this.up);
     }
 
-    public Matrix getViewMatrix()
+    public int getVersion()
     {
-        Matrix viewMatrix = new Matrix(4, 4);
+        return this.version;
+    }
+    public void setPosition(double x, double y, double z)
+    {
+        this.position = new Vector3(x, y, z);
+        this.version++;
+    }
+    private void refresh()
+    {
+        if(this.cachedVersion != this.version)
+        {
+            buildViewMatrix(this.view);
+            Mat4.mulInto(this.viewProjection, this.perspective, this.view);
+            this.cachedVersion = this.version;
+        }
+    }
+    // The cached matrices are owned by the camera; callers must not modify them
+    public Mat4 getViewMatrix()
+    {
+        refresh();
+        return this.view;
+    }
+    public Mat4 getViewProjection()
+    {
+        refresh();
+        return this.viewProjection;
+    }
+    public Mat4 getViewMatrix(Mat4 viewMatrix)
+    {
+        return viewMatrix.set(getViewMatrix());
+    }
 
-        viewMatrix.matrix[0][0] = right.x;
-        viewMatrix.matrix[0][1] = right.y;
-        viewMatrix.matrix[0][2] = right.z;
-        viewMatrix.matrix[1][0] = up.x;
-        viewMatrix.matrix[1][1] = up.y;
-        viewMatrix.matrix[1][2] = up.z;
-        viewMatrix.matrix[2][0] = forward.x;
-        viewMatrix.matrix[2][1] = forward.y;
-        viewMatrix.matrix[2][2] = forward.z;
-        viewMatrix.matrix[3][3] = 1;
+    private Mat4 buildViewMatrix(Mat4 viewMatrix)
+    {
+        double[] m = viewMatrix.m;
+
+        m[0] = right.x;
+        m[1] = right.y;
+        m[2] = right.z;
+        m[4] = up.x;
+        m[5] = up.y;
+        m[6] = up.z;
+        m[8] = forward.x;
+        m[9] = forward.y;
+        m[10] = forward.z;
+        m[12] = 0;
+        m[13] = 0;
+        m[14] = 0;
+        m[15] = 1;
 
-        viewMatrix.matrix[0][3] = Mat.vecDotNum(right, position);
-        viewMatrix.matrix[1][3] = Mat.vecDotNum(up, position);
-        viewMatrix.matrix[2][3] = Mat.vecDotNum(forward, position);
+        m[3] = Mat.vecDotNum(right, position);
+        m[7] = Mat.vecDotNum(up, position);
+        m[11] = Mat.vecDotNum(forward, position);
 
         return viewMatrix;
     }
 
+    // Screen-space view-projection of the pipeline: a world point p lands at pixel (X / W, Y / W)
+    // with W = m[12..15] . p, where the projected point is run through perspective once more
+    // and divided by its z, as in ClipBuffer.project
+    public Mat4 getScreenViewProjection(Mat4 dst, double scale, int center)
+    {
+        // Clip coordinates (x, y, z) as a point, then perspective again
+        Mat4 clip = this.frustumProjection.set(this.perspective);
+        clip.set(3, 0, 0);
+        clip.set(3, 1, 0);
+        clip.set(3, 2, 0);
+        clip.set(3, 3, 1);
+        Mat4.mulInto(clip, this.perspective, clip);
+        Mat4.mulInto(dst, clip, getViewMatrix());
+
+        double[] m = dst.m;
+        for(int j = 0; j < 4; j++)
+        {
+            double pz = m[8 + j];
+            m[j] = m[j] * scale + pz * center;
+            m[4 + j] = m[4 + j] * scale + pz * center;
+            m[12 + j] = pz;
+        }
+        return dst;
+    }
+
+    // Planes of everything that lands on a width x height screen between the near and far
+    // distances, taken from the rows of the screen-space view-projection. Left and top sit one
+    // pixel outside the screen, since coordinates in (-1, 0) still truncate to pixel 0.
+    public Frustum getFrustum(Frustum dst, double scale, int center, int width, int height)
+    {
+        double[] m = getScreenViewProjection(this.frustumProjection, scale, center).m;
+        dst.setPlane(Frustum.LEFT, m[0] + m[12], m[1] + m[13], m[2] + m[14], m[3] + m[15]);
+        dst.setPlane(Frustum.RIGHT, width * m[12] - m[0], width * m[13] - m[1], width * m[14] - m[2], width * m[15] - m[3]);
+        dst.setPlane(Frustum.TOP, m[4] + m[12], m[5] + m[13], m[6] + m[14], m[7] + m[15]);
+        dst.setPlane(Frustum.BOTTOM, height * m[12] - m[4], height * m[13] - m[5], height * m[14] - m[6], height * m[15] - m[7]);
+        dst.setPlane(Frustum.NEAR, m[12], m[13], m[14], m[15] - this.near);
+        dst.setPlane(Frustum.FAR, -m[12], -m[13], -m[14], this.far - m[15]);
+        return dst;
+    }
+
     public void moveForward(double distance)
     {
+        this.version++;
         position.x += forward.x * distance;
         position.y += forward.y * distance;
         position.z += forward.z * distance;
@@ -265,6 +520,7 @@ class Camera
 
     public void moveRight(double distance)
     {
+        this.version++;
         position.x += right.x * distance;
         position.y += right.y * distance;
         position.z += right.z * distance;
@@ -272,6 +528,7 @@ class Camera
 
     public void moveUp(double distance)
     {
+        this.version++;
         position.x += up.x * distance;
         position.y += up.y * distance;
         position.z += up.z * distance;
@@ -0,0 +1,226 @@
+package engine;
+
+import java.util.Arrays;
+
+// Geometry shared by every instance drawn with it: positions, a flat triangle index list
+// (three vertex indices per triangle), unit object-space face normals and bounds.
+// Built once and never changed afterwards; the edge lists for wireframes are worked out the
+// first time they are asked for.
+class Mesh
+{
+    static final Mesh CUBE = cube();
+
+    final VertexBuffer vertices;
+    final int[] indices;
+    final int triangleCount;
+    final double[] faceNormals;
+    final Bounds bounds;
+    // Every edge once, as pairs of vertex indices, and the same without the edges between two
+    // triangles of one flat face
+    private int[] edges;
+    private int[] outlineEdges;
+
+    public Mesh(VertexBuffer vertices, int[] indices)
+    {
+        this(vertices, indices, faceNormals(vertices, indices), new Bounds(vertices));
+    }
+    // Takes normals and bounds worked out before, as stored in a MeshCache file
+    Mesh(VertexBuffer vertices, int[] indices, double[] faceNormals, Bounds bounds)
+    {
+        assert indices.length % 3 == 0 && faceNormals.length == indices.length;
+        this.vertices = vertices;
+        this.indices = indices;
+        this.triangleCount = indices.length / 3;
+        this.faceNormals = faceNormals;
+        this.bounds = bounds;
+    }
+    private static double[] faceNormals(VertexBuffer vertices, int[] indices)
+    {
+        double[] faceNormals = new double[indices.length];
+        for(int t = 0; t < indices.length / 3; t++)
+        {
+            int i0 = indices[3 * t], i1 = indices[3 * t + 1], i2 = indices[3 * t + 2];
+            double[] x = vertices.x, y = vertices.y, z = vertices.z;
+            double e1x = x[i1] - x[i0], e1y = y[i1] - y[i0], e1z = z[i1] - z[i0];
+            double e2x = x[i2] - x[i0], e2y = y[i2] - y[i0], e2z = z[i2] - z[i0];
+            double nx = e1y * e2z - e1z * e2y;
+            double ny = e1z * e2x - e1x * e2z;
+            double nz = e1x * e2y - e1y * e2x;
+            double mag = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if(mag > 0)
+            {
+                nx /= mag;
+                ny /= mag;
+                nz /= mag;
+            }
+            faceNormals[3 * t] = nx;
+            faceNormals[3 * t + 1] = ny;
+            faceNormals[3 * t + 2] = nz;
+        }
+        return faceNormals;
+    }
+
+    // Each edge of the mesh once, as a pair of vertex indices. Without flatDiagonals an edge
+    // shared by exactly two triangles facing the same way is left out, as the diagonal that
+    // splits a flat quad or polygon into triangles.
+    public int[] edges(boolean flatDiagonals)
+    {
+        if(this.edges == null)
+        {
+            buildEdges();
+        }
+        return flatDiagonals ? this.edges : this.outlineEdges;
+    }
+    // Every side of every triangle, numbered as its place h in indices, is bucketed by its lower
+    // vertex and packed with its higher vertex as (higher << 32 | h). Sorting each bucket puts the
+    // sides along one edge next to each other, in the order of the triangles they belong to.
+    private void buildEdges()
+    {
+        int[] indices = this.indices;
+        int vertexCount = this.vertices.size;
+        int[] start = new int[vertexCount + 1];
+        for(int h = 0; h < indices.length; h++)
+        {
+            start[Math.min(indices[h], indices[next(h)]) + 1]++;
+        }
+        for(int v = 0; v < vertexCount; v++)
+        {
+            start[v + 1] += start[v];
+        }
+        int[] fill = Arrays.copyOf(start, vertexCount);
+        long[] sides = new long[indices.length];
+        for(int h = 0; h < indices.length; h++)
+        {
+            int a = indices[h], b = indices[next(h)];
+            sides[fill[Math.min(a, b)]++] = (long) Math.max(a, b) << 32 | h;
+        }
+
+        int[] all = new int[2 * indices.length];
+        int[] outline = new int[2 * indices.length];
+        int count = 0, outlineCount = 0;
+        double[] n = this.faceNormals;
+        for(int v = 0; v < vertexCount; v++)
+        {
+            Arrays.sort(sides, start[v], start[v + 1]);
+            int s = start[v];
+            while(s < start[v + 1])
+            {
+                int e = s + 1;
+                while(e < start[v + 1] && sides[e] >>> 32 == sides[s] >>> 32)
+                {
+                    e++;
+                }
+                // Drawn the way the first triangle along it runs
+                int h = (int) sides[s];
+                int a = indices[h], b = indices[next(h)];
+                all[count++] = a;
+                all[count++] = b;
+                boolean diagonal = false;
+                if(e - s == 2)
+                {
+                    int t0 = h - h % 3, t1 = (int) sides[s + 1] - (int) sides[s + 1] % 3;
+                    diagonal = n[t0] * n[t1] + n[t0 + 1] * n[t1 + 1] + n[t0 + 2] * n[t1 + 2] > 1 - 1e-9;
+                }
+                if(!diagonal)
+                {
+                    outline[outlineCount++] = a;
+                    outline[outlineCount++] = b;
+                }
+                s = e;
+            }
+        }
+        this.outlineEdges = Arrays.copyOf(outline, outlineCount);
+        this.edges = Arrays.copyOf(all, count);
+    }
+    // The side after h in its triangle
+    private static int next(int h)
+    {
+        return h % 3 == 2 ? h - 2 : h + 1;
+    }
+
+    private static Mesh cube()
+    {
+        VertexBuffer vertices = new VertexBuffer(8);
+        vertices.add(-1, -1, -1); vertices.add(1, -1, -1);
+        vertices.add(1, 1, -1); vertices.add(-1, 1, -1);
+        vertices.add(-1, -1, 1); vertices.add(1, -1, 1);
+        vertices.add(1, 1, 1); vertices.add(-1, 1, 1);
+        int[] indices = {
+                0, 1, 2, 0, 2, 3,  // Front face
+                1, 5, 6, 6, 2, 1,  // Right face
+                5, 4, 7, 5, 7, 6,  // Back face
+                4, 0, 3, 4, 3, 7,  // Left face
+                3, 2, 6, 3, 6, 7,  // Top face
+                4, 5, 1, 4, 1, 0   // Bottom face
+        };
+        return new Mesh(vertices, indices);
+    }
+
+    // Appends the triangles of one instance that face the camera to out, reading its vertices
+    // already transformed and projected into clip starting at base. They are lit by lights, or with
+    // deferShading left TriangleBuffer.UNSHADED with their world-space surface kept for a
+    // VisibilityBuffer to light by the same lights. The instance's normal matrix is worked out into
+    // normals, scratch the caller keeps for reuse. An instance with a singular model adds nothing.
+    public void setupTriangles(Camera camera, ClipBuffer clip, int base, int id, Instance placement,
+                               NormalMatrix normals, Lights lights, boolean deferShading, TriangleBuffer out)
+    {
+        Instance p = placement;
+        // Flattened to nothing, with no normals to light or face the camera by
+        if(!normals.set(p))
+        {
+            return;
+        }
+        double n00 = normals.n00, n01 = normals.n01, n02 = normals.n02;
+        double n10 = normals.n10, n11 = normals.n11, n12 = normals.n12;
+        double n20 = normals.n20, n21 = normals.n21, n22 = normals.n22;
+        double[] vx = this.vertices.x, vy = this.vertices.y, vz = this.vertices.z;
+        double[] n = this.faceNormals;
+        // The camera in object space; its view matrix moves the world by +position, so it sits at
+        // -position. A triangle faces it there exactly when it does in world space, and as the
+        // face normals point in, that is when the normal points away from it.
+        Vector3 position = camera.position;
+        double dx = -position.x - p.m03, dy = -position.y - p.m13, dz = -position.z - p.m23;
+        double ex = (n00 * dx + n10 * dy + n20 * dz) * normals.inverseScale;
+        double ey = (n01 * dx + n11 * dy + n21 * dz) * normals.inverseScale;
+        double ez = (n02 * dx + n12 * dy + n22 * dz) * normals.inverseScale;
+        // Only point lights need to know where a surface is
+        boolean centers = lights.hasPointLights();
+        for(int t = 0; t < this.indices.length; t += 3)
+        {
+            int o0 = this.indices[t];
+            if(n[t] * (ex - vx[o0]) + n[t + 1] * (ey - vy[o0]) + n[t + 2] * (ez - vz[o0]) >= 0)
+            {
+                continue;
+            }
+            double nx = n00 * n[t] + n01 * n[t + 1] + n02 * n[t + 2];
+            double ny = n10 * n[t] + n11 * n[t + 1] + n12 * n[t + 2];
+            double nz = n20 * n[t] + n21 * n[t + 1] + n22 * n[t + 2];
+            if(!normals.unitNormals)
+            {
+                double scale = 1 / Math.sqrt(nx * nx + ny * ny + nz * nz);
+                nx *= scale;
+                ny *= scale;
+                nz *= scale;
+            }
+            double x = 0, y = 0, z = 0;
+            if(centers)
+            {
+                int o1 = this.indices[t + 1], o2 = this.indices[t + 2];
+                double ox = (vx[o0] + vx[o1] + vx[o2]) / 3, oy = (vy[o0] + vy[o1] + vy[o2]) / 3, oz = (vz[o0] + vz[o1] + vz[o2]) / 3;
+                x = p.m00 * ox + p.m01 * oy + p.m02 * oz + p.m03;
+                y = p.m10 * ox + p.m11 * oy + p.m12 * oz + p.m13;
+                z = p.m20 * ox + p.m21 * oy + p.m22 * oz + p.m23;
+            }
+            int i0 = base + o0, i1 = base + this.indices[t + 1], i2 = base + this.indices[t + 2];
+            if(deferShading)
+            {
+                int slot = out.add(clip, i0, i1, i2, TriangleBuffer.UNSHADED, id, t / 3);
+                out.setSurface(slot, nx, ny, nz, x, y, z);
+            }
+            else
+            {
+                out.add(clip, i0, i1, i2, lights.shade(nx, ny, nz, x, y, z), id, t / 3);
+            }
+        }
+    }
+}
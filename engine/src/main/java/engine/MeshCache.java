@@ -0,0 +1,175 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Binary copy of a loaded mesh kept next to its source as <source>.mesh, so later launches skip
+// parsing. A cache file is used only while its version and the size and modification time of
+// the source it was written from still match, and its CRC32C checks out; otherwise the source
+// is parsed again and the cache rewritten.
+//
+// Layout, little-endian, every block starting on a BLOCK_ALIGN boundary:
+//   header    magic, version, vertex count, index count, source size, source mtime,
+//             CRC32C of everything after the header, bounds (7 doubles)
+//   vertices  x[], y[], z[] as doubles
+//   normals   unit face normals, 3 doubles per triangle
+//   indices   3 ints per triangle
+// The blocks have the exact layout of the mesh's arrays, so reading one is a single bulk copy
+// out of the mapping rather than a parse.
+class MeshCache
+{
+    static final int MAGIC = 0x4853454d; // "MESH"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int BLOCK_ALIGN = 64;
+    static final String SUFFIX = ".mesh";
+
+    // Loads source through its cache, parsing it and writing the cache when there is none or it
+    // is stale. Failing to write the cache is not an error; the mesh is still returned.
+    public static Mesh load(Path source) throws IOException
+    {
+        Path cache = cachePath(source);
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        if(Files.isRegularFile(cache))
+        {
+            Mesh mesh = read(cache, size, modified);
+            if(mesh != null)
+            {
+                return mesh;
+            }
+        }
+        Mesh mesh = ObjLoader.load(source);
+        try
+        {
+            write(cache, mesh, size, modified);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not write mesh cache " + cache + ": " + e.getMessage());
+        }
+        return mesh;
+    }
+    public static Path cachePath(Path source)
+    {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    // Returns null when the file is not a cache of the current version for a source of this size
+    // and modification time, or fails its checksum
+    static Mesh read(Path cache, long sourceSize, long sourceModified) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ))
+        {
+            if(channel.size() < HEADER_SIZE)
+            {
+                return null;
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+            {
+                return null;
+            }
+            int vertexCount = map.getInt(8);
+            int indexCount = map.getInt(12);
+            if(map.getLong(16) != sourceSize || map.getLong(24) != sourceModified
+                    || vertexCount < 0 || indexCount < 0 || indexCount % 3 != 0
+                    || channel.size() != fileSize(vertexCount, indexCount))
+            {
+                return null;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(map.slice(HEADER_SIZE, map.capacity() - HEADER_SIZE));
+            if(map.getLong(32) != crc.getValue())
+            {
+                return null;
+            }
+            Bounds bounds = new Bounds(map.getDouble(40), map.getDouble(48), map.getDouble(56),
+                    map.getDouble(64), map.getDouble(72), map.getDouble(80), map.getDouble(88));
+
+            VertexBuffer vertices = new VertexBuffer(vertexCount);
+            int offset = HEADER_SIZE;
+            offset = getDoubles(map, offset, vertices.x);
+            offset = getDoubles(map, offset, vertices.y);
+            offset = getDoubles(map, offset, vertices.z);
+            vertices.size = vertexCount;
+            double[] normals = new double[indexCount];
+            offset = getDoubles(map, offset, normals);
+            int[] indices = new int[indexCount];
+            map.slice(offset, indexCount * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(indices);
+            return new Mesh(vertices, indices, normals, bounds);
+        }
+    }
+    private static int getDoubles(ByteBuffer map, int offset, double[] dst)
+    {
+        map.slice(offset, dst.length * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(dst);
+        return (int) align(offset + dst.length * 8L);
+    }
+
+    // Writes to a temporary file first and moves it into place, so a reader never sees half a cache
+    static void write(Path cache, Mesh mesh, long sourceSize, long sourceModified) throws IOException
+    {
+        VertexBuffer vertices = mesh.vertices;
+        int vertexCount = vertices.size;
+        int indexCount = mesh.indices.length;
+        long size = fileSize(vertexCount, indexCount);
+        if(size > Integer.MAX_VALUE)
+        {
+            throw new IOException("mesh too large to cache");
+        }
+
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try
+        {
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                int offset = HEADER_SIZE;
+                offset = putDoubles(map, offset, vertices.x, vertexCount);
+                offset = putDoubles(map, offset, vertices.y, vertexCount);
+                offset = putDoubles(map, offset, vertices.z, vertexCount);
+                offset = putDoubles(map, offset, mesh.faceNormals, indexCount);
+                map.slice(offset, indexCount * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(mesh.indices);
+
+                CRC32C crc = new CRC32C();
+                crc.update(map.slice(HEADER_SIZE, (int) size - HEADER_SIZE));
+                Bounds b = mesh.bounds;
+                map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, vertexCount).putInt(12, indexCount)
+                        .putLong(16, sourceSize).putLong(24, sourceModified).putLong(32, crc.getValue())
+                        .putDouble(40, b.centerX).putDouble(48, b.centerY).putDouble(56, b.centerZ)
+                        .putDouble(64, b.halfX).putDouble(72, b.halfY).putDouble(80, b.halfZ)
+                        .putDouble(88, b.radius);
+                map.force();
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+    private static int putDoubles(ByteBuffer map, int offset, double[] src, int count)
+    {
+        map.slice(offset, count * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(src, 0, count);
+        return (int) align(offset + count * 8L);
+    }
+
+    private static long fileSize(int vertexCount, int indexCount)
+    {
+        return HEADER_SIZE + 3L * align(vertexCount * 8L) + align(indexCount * 8L) + indexCount * 4L;
+    }
+    private static long align(long offset)
+    {
+        return (offset + BLOCK_ALIGN - 1) & -BLOCK_ALIGN;
+    }
+}
@@ -0,0 +1,594 @@
+package engine;
+
+import java.util.Arrays;
+
+// Quadric error metric edge collapse (Garland and Heckbert). Every vertex carries the summed
+// squared-distance quadrics of the planes of its triangles, weighted by their area. Collapsing an
+// edge merges its ends into the point of least summed error, and the cheapest edge always goes
+// next. Open borders get an extra quadric of a plane standing on the border edge, so outlines keep
+// their shape. Collapses that would turn a triangle over, or pinch the surface by merging two
+// vertices with a neighbour in common besides those across the edge, are refused.
+class MeshSimplifier
+{
+    private static final double BORDER_WEIGHT = 1000;
+    // Smallest cosine between a triangle's normal before and after a collapse
+    private static final double MIN_NORMAL_COS = 0.2;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    // Upper triangle of each vertex's symmetric 4 x 4 quadric: aa ab ac ad bb bc bd cc cd dd
+    private final double[] quadric;
+    private final int[] corners;
+    private final boolean[] triangleDead;
+    private int liveTriangles;
+    // Triangles around each vertex; dead ones are dropped lazily
+    private final int[][] around;
+    private final int[] aroundCount;
+    private final boolean[] vertexDead;
+    // Bumped whenever a vertex moves, so queued edges computed before become stale
+    private final int[] stamp;
+
+    // Queued edges, never reused, and a 4-ary min-heap of them ordered by cost. A heap entry is
+    // the cost as a float in the high half and the edge id in the low half, so sifting compares
+    // plain longs without chasing into the edge arrays, and four children per node halve the
+    // depth of a heap far larger than the cache.
+    private int[] edgeU = new int[64];
+    private int[] edgeV = new int[64];
+    private int[] edgeStampU = new int[64];
+    private int[] edgeStampV = new int[64];
+    private int edgeCount;
+    private long[] heap = new long[64];
+    private int heapSize;
+    // Heap size at which stale edges are next swept out
+    private int compactAt = 64;
+    // Pass over a vertex's triangles that last marked each vertex, so an edge shared by two
+    // triangles is queued once per pass and shared neighbours are counted once
+    private final int[] queued;
+    private int pass;
+    private final double[] scratch = new double[3];
+
+    MeshSimplifier(Mesh mesh)
+    {
+        VertexBuffer v = mesh.vertices;
+        int n = v.size;
+        this.x = Arrays.copyOf(v.x, n);
+        this.y = Arrays.copyOf(v.y, n);
+        this.z = Arrays.copyOf(v.z, n);
+        this.quadric = new double[n * 10];
+        this.corners = mesh.indices.clone();
+        this.triangleDead = new boolean[mesh.triangleCount];
+        this.liveTriangles = mesh.triangleCount;
+        this.vertexDead = new boolean[n];
+        this.stamp = new int[n];
+        this.queued = new int[n];
+
+        this.aroundCount = new int[n];
+        for(int corner : this.corners)
+        {
+            this.aroundCount[corner]++;
+        }
+        this.around = new int[n][];
+        for(int i = 0; i < n; i++)
+        {
+            this.around[i] = new int[Math.max(this.aroundCount[i], 4)];
+            this.aroundCount[i] = 0;
+        }
+        for(int t = 0; t < mesh.triangleCount; t++)
+        {
+            for(int k = 0; k < 3; k++)
+            {
+                int corner = this.corners[3 * t + k];
+                this.around[corner][this.aroundCount[corner]++] = t;
+            }
+        }
+
+        for(int t = 0; t < mesh.triangleCount; t++)
+        {
+            addTriangleQuadric(t);
+        }
+        queueEdges();
+    }
+
+    // Collapses edges until at most target triangles are left or nothing can be collapsed. Can be
+    // called again with a smaller target to carry on from where the last call stopped.
+    void run(int target)
+    {
+        double[] p = new double[3];
+        while(this.liveTriangles > target && this.heapSize > 0)
+        {
+            int e = pop();
+            if(isStale(e))
+            {
+                continue;
+            }
+            int u = this.edgeU[e], v = this.edgeV[e];
+            if(!isLinkValid(u, v))
+            {
+                continue;
+            }
+            place(u, v, p);
+            if(flips(u, v, p) || flips(v, u, p))
+            {
+                continue;
+            }
+            collapse(u, v, p);
+        }
+    }
+
+    // Plane of triangle t, weighted by its area, into the quadrics of its corners
+    private void addTriangleQuadric(int t)
+    {
+        int i0 = this.corners[3 * t], i1 = this.corners[3 * t + 1], i2 = this.corners[3 * t + 2];
+        double e1x = this.x[i1] - this.x[i0], e1y = this.y[i1] - this.y[i0], e1z = this.z[i1] - this.z[i0];
+        double e2x = this.x[i2] - this.x[i0], e2y = this.y[i2] - this.y[i0], e2z = this.z[i2] - this.z[i0];
+        double nx = e1y * e2z - e1z * e2y;
+        double ny = e1z * e2x - e1x * e2z;
+        double nz = e1x * e2y - e1y * e2x;
+        double mag = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if(mag == 0)
+        {
+            return;
+        }
+        double area = mag / 2;
+        nx /= mag;
+        ny /= mag;
+        nz /= mag;
+        double d = -(nx * this.x[i0] + ny * this.y[i0] + nz * this.z[i0]);
+        addPlane(i0, nx, ny, nz, d, area);
+        addPlane(i1, nx, ny, nz, d, area);
+        addPlane(i2, nx, ny, nz, d, area);
+    }
+    private void addPlane(int vertex, double a, double b, double c, double d, double weight)
+    {
+        double[] q = this.quadric;
+        int o = vertex * 10;
+        q[o] += weight * a * a;
+        q[o + 1] += weight * a * b;
+        q[o + 2] += weight * a * c;
+        q[o + 3] += weight * a * d;
+        q[o + 4] += weight * b * b;
+        q[o + 5] += weight * b * c;
+        q[o + 6] += weight * b * d;
+        q[o + 7] += weight * c * c;
+        q[o + 8] += weight * c * d;
+        q[o + 9] += weight * d * d;
+    }
+
+    // Adds a steep plane through every border edge, one with a single triangle, perpendicular to
+    // that triangle, and then queues every edge once
+    private void queueEdges()
+    {
+        for(int t = 0; t < this.triangleDead.length; t++)
+        {
+            for(int k = 0; k < 3; k++)
+            {
+                int a = this.corners[3 * t + k], b = this.corners[3 * t + (k + 1) % 3];
+                if(countTriangles(a, b) == 1)
+                {
+                    addBorderPlane(t, a, b);
+                }
+            }
+        }
+        for(int a = 0; a < this.around.length; a++)
+        {
+            this.pass++;
+            for(int i = 0; i < this.aroundCount[a]; i++)
+            {
+                int o = 3 * this.around[a][i];
+                for(int k = 0; k < 3; k++)
+                {
+                    int b = this.corners[o + k];
+                    if(b > a && this.queued[b] != this.pass)
+                    {
+                        this.queued[b] = this.pass;
+                        push(a, b);
+                    }
+                }
+            }
+        }
+    }
+    // Live triangles having both a and b as corners
+    private int countTriangles(int a, int b)
+    {
+        int count = 0;
+        for(int i = 0; i < this.aroundCount[a]; i++)
+        {
+            int t = this.around[a][i];
+            int o = 3 * t;
+            if(!this.triangleDead[t] && (this.corners[o] == b || this.corners[o + 1] == b || this.corners[o + 2] == b))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+    // True when u and v share no neighbours other than the far corners of the triangles on
+    // their edge, so merging them leaves the surface a manifold
+    private boolean isLinkValid(int u, int v)
+    {
+        int neighbour = ++this.pass;
+        for(int i = 0; i < this.aroundCount[u]; i++)
+        {
+            int t = this.around[u][i];
+            if(!this.triangleDead[t])
+            {
+                for(int k = 0; k < 3; k++)
+                {
+                    this.queued[this.corners[3 * t + k]] = neighbour;
+                }
+            }
+        }
+        int counted = ++this.pass;
+        int common = 0;
+        for(int i = 0; i < this.aroundCount[v]; i++)
+        {
+            int t = this.around[v][i];
+            if(!this.triangleDead[t])
+            {
+                for(int k = 0; k < 3; k++)
+                {
+                    int w = this.corners[3 * t + k];
+                    if(w != u && w != v && this.queued[w] == neighbour)
+                    {
+                        this.queued[w] = counted;
+                        common++;
+                    }
+                }
+            }
+        }
+        return common <= countTriangles(u, v);
+    }
+    private void addBorderPlane(int t, int a, int b)
+    {
+        int i0 = this.corners[3 * t], i1 = this.corners[3 * t + 1], i2 = this.corners[3 * t + 2];
+        double e1x = this.x[i1] - this.x[i0], e1y = this.y[i1] - this.y[i0], e1z = this.z[i1] - this.z[i0];
+        double e2x = this.x[i2] - this.x[i0], e2y = this.y[i2] - this.y[i0], e2z = this.z[i2] - this.z[i0];
+        double nx = e1y * e2z - e1z * e2y;
+        double ny = e1z * e2x - e1x * e2z;
+        double nz = e1x * e2y - e1y * e2x;
+        double ex = this.x[b] - this.x[a], ey = this.y[b] - this.y[a], ez = this.z[b] - this.z[a];
+        // Plane through the edge containing the triangle's normal
+        double px = ey * nz - ez * ny;
+        double py = ez * nx - ex * nz;
+        double pz = ex * ny - ey * nx;
+        double mag = Math.sqrt(px * px + py * py + pz * pz);
+        if(mag == 0)
+        {
+            return;
+        }
+        px /= mag;
+        py /= mag;
+        pz /= mag;
+        double d = -(px * this.x[a] + py * this.y[a] + pz * this.z[a]);
+        double weight = BORDER_WEIGHT * (ex * ex + ey * ey + ez * ez);
+        addPlane(a, px, py, pz, d, weight);
+        addPlane(b, px, py, pz, d, weight);
+    }
+
+    // Error of point (px, py, pz) under the summed quadric of u and v
+    private double error(int u, int v, double px, double py, double pz)
+    {
+        double[] q = this.quadric;
+        int a = u * 10, b = v * 10;
+        return (q[a] + q[b]) * px * px + 2 * (q[a + 1] + q[b + 1]) * px * py + 2 * (q[a + 2] + q[b + 2]) * px * pz
+                + 2 * (q[a + 3] + q[b + 3]) * px + (q[a + 4] + q[b + 4]) * py * py + 2 * (q[a + 5] + q[b + 5]) * py * pz
+                + 2 * (q[a + 6] + q[b + 6]) * py + (q[a + 7] + q[b + 7]) * pz * pz + 2 * (q[a + 8] + q[b + 8]) * pz
+                + (q[a + 9] + q[b + 9]);
+    }
+    // Point the edge collapses to: the quadric's minimum when it is well defined and stays near
+    // the edge, otherwise the better of the two ends and the midpoint. Returns its error.
+    private double place(int u, int v, double[] p)
+    {
+        double mx = (this.x[u] + this.x[v]) / 2, my = (this.y[u] + this.y[v]) / 2, mz = (this.z[u] + this.z[v]) / 2;
+        double best = error(u, v, mx, my, mz);
+        p[0] = mx;
+        p[1] = my;
+        p[2] = mz;
+        double eu = error(u, v, this.x[u], this.y[u], this.z[u]);
+        if(eu < best)
+        {
+            best = eu;
+            p[0] = this.x[u];
+            p[1] = this.y[u];
+            p[2] = this.z[u];
+        }
+        double ev = error(u, v, this.x[v], this.y[v], this.z[v]);
+        if(ev < best)
+        {
+            best = ev;
+            p[0] = this.x[v];
+            p[1] = this.y[v];
+            p[2] = this.z[v];
+        }
+
+        double[] q = this.quadric;
+        int a = u * 10, b = v * 10;
+        double aa = q[a] + q[b], ab = q[a + 1] + q[b + 1], ac = q[a + 2] + q[b + 2], ad = q[a + 3] + q[b + 3];
+        double bb = q[a + 4] + q[b + 4], bc = q[a + 5] + q[b + 5], bd = q[a + 6] + q[b + 6];
+        double cc = q[a + 7] + q[b + 7], cd = q[a + 8] + q[b + 8];
+        double det = aa * (bb * cc - bc * bc) - ab * (ab * cc - bc * ac) + ac * (ab * bc - bb * ac);
+        if(det != 0)
+        {
+            // Cramer's rule for Q3 p = -(ad, bd, cd)
+            double sx = (-ad * (bb * cc - bc * bc) + ab * (bd * cc - bc * cd) - ac * (bd * bc - bb * cd)) / det;
+            double sy = (aa * (-bd * cc + cd * bc) + ad * (ab * cc - bc * ac) + ac * (ab * cd - bd * ac)) / det;
+            double sz = (aa * (-bb * cd + bc * bd) - ab * (-ab * cd + bd * ac) - ad * (ab * bc - bb * ac)) / det;
+            double dx = sx - mx, dy = sy - my, dz = sz - mz;
+            double ex = this.x[u] - this.x[v], ey = this.y[u] - this.y[v], ez = this.z[u] - this.z[v];
+            if(dx * dx + dy * dy + dz * dz <= ex * ex + ey * ey + ez * ez)
+            {
+                double es = error(u, v, sx, sy, sz);
+                if(es < best)
+                {
+                    best = es;
+                    p[0] = sx;
+                    p[1] = sy;
+                    p[2] = sz;
+                }
+            }
+        }
+        return best;
+    }
+
+    // True when moving vertex from to p would turn over one of its triangles that survives the
+    // collapse, one not also touching other
+    private boolean flips(int from, int other, double[] p)
+    {
+        int[] list = this.around[from];
+        for(int i = 0; i < this.aroundCount[from]; i++)
+        {
+            int t = list[i];
+            if(this.triangleDead[t])
+            {
+                continue;
+            }
+            int o = 3 * t;
+            int i0 = this.corners[o], i1 = this.corners[o + 1], i2 = this.corners[o + 2];
+            if(i0 == other || i1 == other || i2 == other)
+            {
+                continue;
+            }
+            // Rotate so the moving corner comes first
+            if(i1 == from)
+            {
+                i1 = i2;
+                i2 = i0;
+            }
+            else if(i2 == from)
+            {
+                i2 = i1;
+                i1 = i0;
+            }
+            double ax = this.x[i1] - this.x[from], ay = this.y[i1] - this.y[from], az = this.z[i1] - this.z[from];
+            double bx = this.x[i2] - this.x[from], by = this.y[i2] - this.y[from], bz = this.z[i2] - this.z[from];
+            double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+            double cx = this.x[i1] - p[0], cy = this.y[i1] - p[1], cz = this.z[i1] - p[2];
+            double dx = this.x[i2] - p[0], dy = this.y[i2] - p[1], dz = this.z[i2] - p[2];
+            double mx = cy * dz - cz * dy, my = cz * dx - cx * dz, mz = cx * dy - cy * dx;
+            double dot = nx * mx + ny * my + nz * mz;
+            double mags = Math.sqrt((nx * nx + ny * ny + nz * nz) * (mx * mx + my * my + mz * mz));
+            if(dot <= MIN_NORMAL_COS * mags)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Moves u to p, folds v into it and requeues the edges around u
+    private void collapse(int u, int v, double[] p)
+    {
+        this.x[u] = p[0];
+        this.y[u] = p[1];
+        this.z[u] = p[2];
+        for(int k = 0; k < 10; k++)
+        {
+            this.quadric[u * 10 + k] += this.quadric[v * 10 + k];
+        }
+        this.vertexDead[v] = true;
+        this.stamp[u]++;
+        this.stamp[v]++;
+
+        int[] list = this.around[v];
+        for(int i = 0; i < this.aroundCount[v]; i++)
+        {
+            int t = list[i];
+            if(this.triangleDead[t])
+            {
+                continue;
+            }
+            int o = 3 * t;
+            if(this.corners[o] == u || this.corners[o + 1] == u || this.corners[o + 2] == u)
+            {
+                this.triangleDead[t] = true;
+                this.liveTriangles--;
+                continue;
+            }
+            for(int k = 0; k < 3; k++)
+            {
+                if(this.corners[o + k] == v)
+                {
+                    this.corners[o + k] = u;
+                }
+            }
+            addAround(u, t);
+        }
+        this.around[v] = null;
+        this.aroundCount[v] = 0;
+
+        // Drop dead triangles from u's list while queueing its edges anew
+        this.pass++;
+        int[] uList = this.around[u];
+        int kept = 0;
+        for(int i = 0; i < this.aroundCount[u]; i++)
+        {
+            int t = uList[i];
+            if(this.triangleDead[t])
+            {
+                continue;
+            }
+            uList[kept++] = t;
+            int o = 3 * t;
+            for(int k = 0; k < 3; k++)
+            {
+                int w = this.corners[o + k];
+                if(w != u && this.queued[w] != this.pass)
+                {
+                    this.queued[w] = this.pass;
+                    push(u, w);
+                }
+            }
+        }
+        this.aroundCount[u] = kept;
+    }
+    private void addAround(int vertex, int t)
+    {
+        int[] list = this.around[vertex];
+        if(this.aroundCount[vertex] == list.length)
+        {
+            list = Arrays.copyOf(list, list.length * 2);
+            this.around[vertex] = list;
+        }
+        list[this.aroundCount[vertex]++] = t;
+    }
+
+    // True when an end of queued edge e has moved or gone since it was queued
+    private boolean isStale(int e)
+    {
+        int u = this.edgeU[e], v = this.edgeV[e];
+        return this.vertexDead[u] || this.vertexDead[v]
+                || this.stamp[u] != this.edgeStampU[e] || this.stamp[v] != this.edgeStampV[e];
+    }
+
+    private void push(int u, int v)
+    {
+        if(this.edgeCount == this.edgeU.length)
+        {
+            int capacity = this.edgeCount * 2;
+            this.edgeU = Arrays.copyOf(this.edgeU, capacity);
+            this.edgeV = Arrays.copyOf(this.edgeV, capacity);
+            this.edgeStampU = Arrays.copyOf(this.edgeStampU, capacity);
+            this.edgeStampV = Arrays.copyOf(this.edgeStampV, capacity);
+        }
+        int e = this.edgeCount++;
+        this.edgeU[e] = u;
+        this.edgeV[e] = v;
+        this.edgeStampU[e] = this.stamp[u];
+        this.edgeStampV[e] = this.stamp[v];
+
+        if(this.heapSize >= this.compactAt)
+        {
+            compact();
+        }
+        if(this.heapSize == this.heap.length)
+        {
+            this.heap = Arrays.copyOf(this.heap, this.heapSize * 2);
+        }
+        // The bits of a non-negative float order like the float itself
+        float cost = (float) Math.max(place(u, v, this.scratch), 0);
+        long entry = (long) Float.floatToRawIntBits(cost) << 32 | e;
+        int i = this.heapSize++;
+        while(i > 0)
+        {
+            int parent = (i - 1) >>> 2;
+            if(this.heap[parent] <= entry)
+            {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            i = parent;
+        }
+        this.heap[i] = entry;
+    }
+    private int pop()
+    {
+        int top = (int) this.heap[0];
+        long last = this.heap[--this.heapSize];
+        if(this.heapSize > 0)
+        {
+            siftDown(0, last);
+        }
+        return top;
+    }
+    // Puts entry at slot i or below it, moving smaller children up
+    private void siftDown(int i, long entry)
+    {
+        while(true)
+        {
+            int first = 4 * i + 1;
+            if(first >= this.heapSize)
+            {
+                break;
+            }
+            int child = first;
+            int end = Math.min(first + 4, this.heapSize);
+            for(int c = first + 1; c < end; c++)
+            {
+                if(this.heap[c] < this.heap[child])
+                {
+                    child = c;
+                }
+            }
+            if(this.heap[child] >= entry)
+            {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        this.heap[i] = entry;
+    }
+    // Most queued edges go stale before they come up, each collapse outdating those of the
+    // moved vertex. Sweeping them out whenever the heap has doubled keeps it from filling with
+    // entries that would only cost a sift each to pop.
+    private void compact()
+    {
+        int kept = 0;
+        for(int i = 0; i < this.heapSize; i++)
+        {
+            if(!isStale((int) this.heap[i]))
+            {
+                this.heap[kept++] = this.heap[i];
+            }
+        }
+        this.heapSize = kept;
+        for(int i = (kept - 2) >>> 2; kept > 1 && i >= 0; i--)
+        {
+            siftDown(i, this.heap[i]);
+        }
+        this.compactAt = Math.max(2 * kept, 64);
+    }
+
+    int getTriangleCount()
+    {
+        return this.liveTriangles;
+    }
+
+    // The current state as a new mesh, with the unused vertices dropped
+    Mesh toMesh()
+    {
+        int[] remap = new int[this.x.length];
+        Arrays.fill(remap, -1);
+        VertexBuffer vertices = new VertexBuffer(Math.max(this.liveTriangles, 4));
+        int[] indices = new int[this.liveTriangles * 3];
+        int n = 0;
+        for(int t = 0; t < this.triangleDead.length; t++)
+        {
+            if(this.triangleDead[t])
+            {
+                continue;
+            }
+            for(int k = 0; k < 3; k++)
+            {
+                int corner = this.corners[3 * t + k];
+                if(remap[corner] < 0)
+                {
+                    remap[corner] = vertices.add(this.x[corner], this.y[corner], this.z[corner]);
+                }
+                indices[n++] = remap[corner];
+            }
+        }
+        return new Mesh(vertices, indices);
+    }
+}
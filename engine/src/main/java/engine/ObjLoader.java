@@ -0,0 +1,296 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads the positions and faces of a Wavefront OBJ file into a Mesh. The file is memory-mapped
+// and scanned byte by byte with a hand-written number parser, writing straight into the
+// primitive vertex and index arrays, so loading allocates little besides the mesh itself.
+// Faces with more than three corners are split into a fan; texture coordinates, normals,
+// groups and materials are skipped.
+class ObjLoader
+{
+    private final MappedByteBuffer in;
+    private final int end;
+    private int pos;
+    private int line = 1;
+
+    private final VertexBuffer vertices;
+    private int[] indices;
+    private int indexCount;
+
+    private ObjLoader(MappedByteBuffer in)
+    {
+        this.in = in;
+        this.end = in.limit();
+        // Rough guesses for a file made mostly of "v" and "f" lines, to spare most regrowing
+        this.vertices = new VertexBuffer(Math.max(this.end / 80, 16));
+        this.indices = new int[Math.max(this.end / 16, 48)];
+    }
+
+    public static Mesh load(Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE)
+            {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            ObjLoader loader = new ObjLoader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            loader.parse();
+            if(loader.indexCount == 0)
+            {
+                throw new IOException(path + " has no faces");
+            }
+            return new Mesh(loader.vertices, java.util.Arrays.copyOf(loader.indices, loader.indexCount));
+        }
+    }
+
+    private void parse() throws IOException
+    {
+        while(this.pos < this.end)
+        {
+            skipSpaces();
+            if(this.pos >= this.end)
+            {
+                break;
+            }
+            byte c = this.in.get(this.pos);
+            byte next = this.pos + 1 < this.end ? this.in.get(this.pos + 1) : (byte) '\n';
+            if(c == 'v' && isSpace(next))
+            {
+                this.pos++;
+                double x = parseNumber();
+                double y = parseNumber();
+                double z = parseNumber();
+                this.vertices.add(x, y, z);
+            }
+            else if(c == 'f' && isSpace(next))
+            {
+                this.pos++;
+                parseFace();
+            }
+            skipLine();
+        }
+    }
+
+    // Reads "f a b c ..." with a, b, c each "v", "v/vt", "v//vn" or "v/vt/vn", one based or
+    // negative for counting back from the last vertex, and appends the fan a b c, a c d, ...
+    private void parseFace() throws IOException
+    {
+        int first = -1;
+        int previous = -1;
+        int corners = 0;
+        while(true)
+        {
+            skipSpaces();
+            if(this.pos >= this.end || isLineEnd(this.in.get(this.pos)))
+            {
+                break;
+            }
+            int index = parseIndex();
+            // The texture and normal indices of the corner are not used
+            while(this.pos < this.end && !isSpace(this.in.get(this.pos)) && !isLineEnd(this.in.get(this.pos)))
+            {
+                this.pos++;
+            }
+            if(corners == 0)
+            {
+                first = index;
+            }
+            else if(corners >= 2)
+            {
+                addTriangle(first, previous, index);
+            }
+            previous = index;
+            corners++;
+        }
+        if(corners < 3)
+        {
+            throw error("face with fewer than three corners");
+        }
+    }
+    private int parseIndex() throws IOException
+    {
+        boolean negative = false;
+        if(this.in.get(this.pos) == '-')
+        {
+            negative = true;
+            this.pos++;
+        }
+        int start = this.pos;
+        long value = 0;
+        while(this.pos < this.end)
+        {
+            int digit = this.in.get(this.pos) - '0';
+            if(digit < 0 || digit > 9)
+            {
+                break;
+            }
+            value = value * 10 + digit;
+            if(value > Integer.MAX_VALUE)
+            {
+                throw error("vertex index out of range");
+            }
+            this.pos++;
+        }
+        if(this.pos == start)
+        {
+            throw error("expected a vertex index");
+        }
+        long index = negative ? this.vertices.size - value : value - 1;
+        if(value == 0 || index < 0 || index >= this.vertices.size)
+        {
+            throw error("vertex index out of range");
+        }
+        return (int) index;
+    }
+    private void addTriangle(int i0, int i1, int i2)
+    {
+        if(this.indexCount + 3 > this.indices.length)
+        {
+            this.indices = java.util.Arrays.copyOf(this.indices, Math.max(this.indices.length * 2, this.indexCount + 3));
+        }
+        this.indices[this.indexCount++] = i0;
+        this.indices[this.indexCount++] = i1;
+        this.indices[this.indexCount++] = i2;
+    }
+
+    // Decimal number with optional sign, fraction and exponent. Up to 18 significant digits are
+    // gathered into a long and scaled by a power of ten from a table. When the long is exact as a
+    // double the result is correctly rounded; longer mantissas, as printed for full doubles, can
+    // be an ulp off, far below what reaches the screen. Exponents beyond the table go through
+    // Double.parseDouble.
+    private double parseNumber() throws IOException
+    {
+        skipSpaces();
+        int start = this.pos;
+        boolean negative = false;
+        if(this.pos < this.end && (this.in.get(this.pos) == '-' || this.in.get(this.pos) == '+'))
+        {
+            negative = this.in.get(this.pos) == '-';
+            this.pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        boolean fraction = false;
+        while(this.pos < this.end)
+        {
+            byte c = this.in.get(this.pos);
+            if(c >= '0' && c <= '9')
+            {
+                any = true;
+                if(digits < 18)
+                {
+                    if(mantissa != 0 || c != '0')
+                    {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    if(fraction)
+                    {
+                        exponent--;
+                    }
+                }
+                else
+                {
+                    if(!fraction)
+                    {
+                        exponent++;
+                    }
+                }
+            }
+            else if(c == '.' && !fraction)
+            {
+                fraction = true;
+            }
+            else
+            {
+                break;
+            }
+            this.pos++;
+        }
+        if(!any)
+        {
+            throw error("expected a number");
+        }
+        if(this.pos < this.end && (this.in.get(this.pos) == 'e' || this.in.get(this.pos) == 'E'))
+        {
+            this.pos++;
+            boolean negativeExponent = false;
+            if(this.pos < this.end && (this.in.get(this.pos) == '-' || this.in.get(this.pos) == '+'))
+            {
+                negativeExponent = this.in.get(this.pos) == '-';
+                this.pos++;
+            }
+            int value = 0;
+            int from = this.pos;
+            while(this.pos < this.end && this.in.get(this.pos) >= '0' && this.in.get(this.pos) <= '9')
+            {
+                value = Math.min(value * 10 + (this.in.get(this.pos) - '0'), 100000);
+                this.pos++;
+            }
+            if(this.pos == from)
+            {
+                throw error("malformed exponent");
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        double result;
+        if(exponent >= -22 && exponent <= 22)
+        {
+            result = exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+        }
+        else
+        {
+            byte[] text = new byte[this.pos - start];
+            this.in.get(start, text);
+            return Double.parseDouble(new String(text, java.nio.charset.StandardCharsets.US_ASCII));
+        }
+        return negative ? -result : result;
+    }
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private void skipSpaces()
+    {
+        while(this.pos < this.end && isSpace(this.in.get(this.pos)))
+        {
+            this.pos++;
+        }
+    }
+    // Moves past the end of the current line
+    private void skipLine()
+    {
+        while(this.pos < this.end)
+        {
+            byte c = this.in.get(this.pos++);
+            if(c == '\n')
+            {
+                this.line++;
+                return;
+            }
+        }
+    }
+    private static boolean isSpace(byte c)
+    {
+        return c == ' ' || c == '\t';
+    }
+    private static boolean isLineEnd(byte c)
+    {
+        return c == '\n' || c == '\r' || c == '#';
+    }
+    private IOException error(String message)
+    {
+        return new IOException("OBJ line " + this.line + ": " + message);
+    }
+}
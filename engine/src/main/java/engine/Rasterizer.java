@@ -0,0 +1,369 @@
+package engine;
+
+// Edge-function triangle rasterizer writing into a FrameBuffer and a z-buffer, and into the
+// frame's IdBuffer when it has one, or only depth and triangle slots into a VisibilityBuffer
+class Rasterizer
+{
+    // A pixel only takes a depth nearer than the stored one by more than this, on the 0 to 1
+    // scale from the near to the far plane
+    private static final double EPSILON = 1e-5;
+    static final int BLOCK = 8;
+    // Vertex coordinates are snapped to 1 / SUBPIXEL of a pixel, 28.4 fixed point
+    static final int SUBPIXEL = 16;
+    // Triangles reaching further than this many pixels off the origin are dropped. Only vertices
+    // next to the camera plane project that far, and it keeps every edge value below 2^53, so
+    // they stay exact in longs and in VectorFill's doubles alike.
+    private static final double GUARD = 1 << 20;
+
+    private int[] pixels;
+    private int width;
+    private int height;
+    private DepthBuffer depthBuffer;
+    private float[] depth;
+    private int color;
+    // The target's ids, or null, and the slot of the triangle being drawn
+    private int[] ids;
+    private int id;
+    // Whether pixels is a VisibilityBuffer, taking the slot of each triangle for its color
+    private boolean slots;
+    // Block pixel loop on vectors, only there when Simd.ENABLED
+    private final VectorFill vector = Simd.ENABLED ? new VectorFill() : null;
+
+    // Only counted when FrameStats.ENABLED; read and reset with collectStats
+    private int occluded;
+    private long pixelsTested;
+    private long pixelsWritten;
+
+    // Only pixels inside [clipMinX, clipMaxX) x [clipMinY, clipMaxY) are read or written
+    private int clipMinX;
+    private int clipMinY;
+    private int clipMaxX;
+    private int clipMaxY;
+
+    public Rasterizer()
+    {
+    }
+    public Rasterizer(FrameBuffer frameBuffer, DepthBuffer depthBuffer)
+    {
+        setTarget(frameBuffer, depthBuffer);
+    }
+    public void setTarget(FrameBuffer frameBuffer, DepthBuffer depthBuffer)
+    {
+        this.pixels = frameBuffer.pixels;
+        this.width = frameBuffer.width;
+        this.height = frameBuffer.height;
+        assert depthBuffer.width == this.width && depthBuffer.height == this.height;
+        this.depthBuffer = depthBuffer;
+        this.depth = depthBuffer.depth;
+        this.ids = frameBuffer.ids != null ? frameBuffer.ids.ids : null;
+        this.slots = false;
+        if(Simd.ENABLED)
+        {
+            this.vector.setTarget(this.pixels, this.depth, this.ids, this.width);
+        }
+        setClip(0, 0, this.width, this.height);
+    }
+    // Triangles from drawTriangles write their slot where they would write their color
+    public void setTarget(VisibilityBuffer visibility, DepthBuffer depthBuffer)
+    {
+        this.pixels = visibility.slots;
+        this.width = visibility.width;
+        this.height = visibility.height;
+        assert depthBuffer.width == this.width && depthBuffer.height == this.height;
+        this.depthBuffer = depthBuffer;
+        this.depth = depthBuffer.depth;
+        this.ids = null;
+        this.slots = true;
+        if(Simd.ENABLED)
+        {
+            this.vector.setTarget(this.pixels, this.depth, null, this.width);
+        }
+        setClip(0, 0, this.width, this.height);
+    }
+    // Block alignment is global, so clip edges other than the screen edge must be multiples of BLOCK
+    public void setClip(int minX, int minY, int maxX, int maxY)
+    {
+        this.clipMinX = Math.max(minX, 0);
+        this.clipMinY = Math.max(minY, 0);
+        this.clipMaxX = Math.min(maxX, this.width);
+        this.clipMaxY = Math.min(maxY, this.height);
+    }
+    public void setColor(int rgb)
+    {
+        this.color = rgb;
+    }
+
+    // Draws the whole list in order
+    public void drawTriangles(TriangleBuffer triangles)
+    {
+        for(int t = 0; t < triangles.size; t++)
+        {
+            drawTriangle(triangles, t);
+        }
+    }
+    // Draws triangles order[0..count) of the list
+    public void drawTriangles(TriangleBuffer triangles, int[] order, int count)
+    {
+        for(int i = 0; i < count; i++)
+        {
+            drawTriangle(triangles, order[i]);
+        }
+    }
+    private void drawTriangle(TriangleBuffer triangles, int t)
+    {
+        double[] v = triangles.coords;
+        int o = t * TriangleBuffer.STRIDE;
+        double x0 = v[o], y0 = v[o + 1], z0 = v[o + 2];
+        double x1 = v[o + 3], y1 = v[o + 4], z1 = v[o + 5];
+        double x2 = v[o + 6], y2 = v[o + 7], z2 = v[o + 8];
+        if(isOccluded(x0, y0, z0, x1, y1, z1, x2, y2, z2))
+        {
+            if(FrameStats.ENABLED)
+            {
+                this.occluded++;
+            }
+            return;
+        }
+        setColor(this.slots ? t : triangles.color[t]);
+        this.id = t;
+        fillTriangle(x0, y0, z0, x1, y1, z1, x2, y2, z2);
+    }
+
+    // Conservative test against the depth buffer's coarse maxes over the triangle's bounds in
+    // this clip rectangle, widened by a pixel for snapping: when no stored depth there is farther
+    // than the triangle's nearest vertex by more than EPSILON, the fill cannot write anything
+    private boolean isOccluded(double x0, double y0, double z0,
+                               double x1, double y1, double z1,
+                               double x2, double y2, double z2)
+    {
+        int minX = Math.max((int) Math.floor(Math.min(x0, Math.min(x1, x2))), clipMinX);
+        int maxX = Math.min((int) Math.floor(Math.max(x0, Math.max(x1, x2))) + 1, clipMaxX - 1);
+        int minY = Math.max((int) Math.floor(Math.min(y0, Math.min(y1, y2))), clipMinY);
+        int maxY = Math.min((int) Math.floor(Math.max(y0, Math.max(y1, y2))) + 1, clipMaxY - 1);
+        double nearZ = Math.min(z0, Math.min(z1, z2));
+        return depthBuffer.isOccluded(minX, minY, maxX, maxY, nearZ + EPSILON);
+    }
+
+    // Adds this rasterizer's counts since the last call to stats and starts counting afresh
+    public void collectStats(FrameStats stats)
+    {
+        stats.trianglesOccluded += this.occluded;
+        stats.pixelsTested += this.pixelsTested;
+        stats.pixelsWritten += this.pixelsWritten;
+        if(Simd.ENABLED)
+        {
+            stats.pixelsTested += this.vector.tested;
+            stats.pixelsWritten += this.vector.wrote;
+            this.vector.tested = 0;
+            this.vector.wrote = 0;
+        }
+        this.occluded = 0;
+        this.pixelsTested = 0;
+        this.pixelsWritten = 0;
+    }
+
+    // Half-space rasterizer on vertices snapped to SUBPIXEL fixed point. The bounding box is walked
+    // in BLOCK x BLOCK blocks aligned to the screen; a block is skipped when it lies fully outside
+    // one edge, and the per-pixel edge tests are dropped when it lies fully inside all three. The
+    // edge functions are evaluated exactly in integers, so a pixel on an edge shared by two
+    // triangles gets exactly negated values from them and the top-left fill rule gives it to
+    // exactly one: meshes come out without cracks or double-drawn pixels, and the coverage of an
+    // edge only moves when a vertex crosses a subpixel step. Pixels are sampled at integer
+    // coordinates. Depth is interpolated over the snapped triangle, stepped down the rows of a
+    // block and taken across a row as the row start plus a multiple of the step, which
+    // VectorFill computes for a whole row at once to the same bits.
+    public void fillTriangle(double x0, double y0, double z0,
+                             double x1, double y1, double z1,
+                             double x2, double y2, double z2)
+    {
+        // Also false for NaN, which vertices on the camera plane project to
+        if(!(Math.abs(x0) < GUARD && Math.abs(y0) < GUARD && Math.abs(x1) < GUARD && Math.abs(y1) < GUARD
+                && Math.abs(x2) < GUARD && Math.abs(y2) < GUARD))
+        {
+            return;
+        }
+        long fx0 = Math.round(x0 * SUBPIXEL), fy0 = Math.round(y0 * SUBPIXEL);
+        long fx1 = Math.round(x1 * SUBPIXEL), fy1 = Math.round(y1 * SUBPIXEL);
+        long fx2 = Math.round(x2 * SUBPIXEL), fy2 = Math.round(y2 * SUBPIXEL);
+        long area = (fx1 - fx0) * (fy2 - fy0) - (fy1 - fy0) * (fx2 - fx0);
+        if(area == 0)
+        {
+            return;
+        }
+        if(area < 0)
+        {
+            long f = fx1; fx1 = fx2; fx2 = f;
+            f = fy1; fy1 = fy2; fy2 = f;
+            double t = z1; z1 = z2; z2 = t;
+            area = -area;
+        }
+
+        // First and last pixel centers inside the snapped bounds
+        int minX = Math.max((int) ceilDiv(Math.min(fx0, Math.min(fx1, fx2)), SUBPIXEL), clipMinX);
+        int maxX = Math.min((int) Math.floorDiv(Math.max(fx0, Math.max(fx1, fx2)), SUBPIXEL), clipMaxX - 1);
+        int minY = Math.max((int) ceilDiv(Math.min(fy0, Math.min(fy1, fy2)), SUBPIXEL), clipMinY);
+        int maxY = Math.min((int) Math.floorDiv(Math.max(fy0, Math.max(fy1, fy2)), SUBPIXEL), clipMaxY - 1);
+        if(minX > maxX || minY > maxY)
+        {
+            return;
+        }
+
+        // E(x, y) = a * x + b * y + c over pixel coordinates, positive inside, in units of
+        // 1 / SUBPIXEL^2. Edge i is opposite vertex i.
+        long a0 = (fy1 - fy2) * SUBPIXEL, b0 = (fx2 - fx1) * SUBPIXEL, c0 = fx1 * fy2 - fy1 * fx2;
+        long a1 = (fy2 - fy0) * SUBPIXEL, b1 = (fx0 - fx2) * SUBPIXEL, c1 = fx2 * fy0 - fy2 * fx0;
+        long a2 = (fy0 - fy1) * SUBPIXEL, b2 = (fx1 - fx0) * SUBPIXEL, c2 = fx0 * fy1 - fy0 * fx1;
+
+        // Top-left rule: samples exactly on an edge belong to it only if it is a left or top edge
+        long t0 = isTopLeft(a0, b0) ? 0 : 1;
+        long t1 = isTopLeft(a1, b1) ? 0 : 1;
+        long t2 = isTopLeft(a2, b2) ? 0 : 1;
+
+        double nearZ = Math.min(z0, Math.min(z1, z2));
+
+        // Depth plane z = z0 + dzdx * (x - sx0) + dzdy * (y - sy0) through the snapped vertices
+        double sx0 = (double) fx0 / SUBPIXEL, sy0 = (double) fy0 / SUBPIXEL;
+        double dzdx = ((z1 - z0) * (fy2 - fy0) - (z2 - z0) * (fy1 - fy0)) * SUBPIXEL / area;
+        double dzdy = ((z2 - z0) * (fx1 - fx0) - (z1 - z0) * (fx2 - fx0)) * SUBPIXEL / area;
+        if(Simd.ENABLED)
+        {
+            this.vector.setTriangle(a0, a1, a2, b0, b1, b2, t0, t1, t2, dzdx, dzdy, color, id);
+        }
+
+        // How far each edge function can grow across a block from its top-left corner
+        int span = BLOCK - 1;
+        long grow0 = (Math.max(a0, 0) + Math.max(b0, 0)) * span;
+        long grow1 = (Math.max(a1, 0) + Math.max(b1, 0)) * span;
+        long grow2 = (Math.max(a2, 0) + Math.max(b2, 0)) * span;
+        long shrink0 = (Math.min(a0, 0) + Math.min(b0, 0)) * span;
+        long shrink1 = (Math.min(a1, 0) + Math.min(b1, 0)) * span;
+        long shrink2 = (Math.min(a2, 0) + Math.min(b2, 0)) * span;
+
+        int startX = minX & ~(BLOCK - 1);
+        int startY = minY & ~(BLOCK - 1);
+        long tested = 0, wrote = 0;
+        for(int by = startY; by <= maxY; by += BLOCK)
+        {
+            int yTo = Math.min(by + BLOCK, clipMaxY);
+            for(int bx = startX; bx <= maxX; bx += BLOCK)
+            {
+                int xTo = Math.min(bx + BLOCK, clipMaxX);
+
+                long e0 = a0 * bx + b0 * by + c0;
+                long e1 = a1 * bx + b1 * by + c1;
+                long e2 = a2 * bx + b2 * by + c2;
+                if(e0 + grow0 < t0 || e1 + grow1 < t1 || e2 + grow2 < t2)
+                {
+                    continue;
+                }
+                double rowZ = z0 + dzdx * (bx - sx0) + dzdy * (by - sy0);
+                // Hi-Z: nearest point of the triangle's plane over the block, but never nearer
+                // than its nearest vertex, against the block's farthest stored depth
+                double blockNear = Math.max(rowZ + Math.min(dzdx, 0) * span + Math.min(dzdy, 0) * span, nearZ);
+                if(blockNear >= depthBuffer.blockMax(bx, by) - EPSILON)
+                {
+                    continue;
+                }
+
+                boolean inside = e0 + shrink0 >= t0 && e1 + shrink1 >= t1 && e2 + shrink2 >= t2;
+
+                boolean written = false;
+                if(Simd.ENABLED && xTo - bx == BLOCK)
+                {
+                    written = this.vector.fillBlock(bx, by, yTo, e0, e1, e2, rowZ, inside, EPSILON);
+                }
+                else if(ids == null)
+                {
+                    for(int y = by; y < yTo; y++)
+                    {
+                        int row = y * width;
+                        for(int x = bx; x < xTo; x++)
+                        {
+                            int k = x - bx;
+                            if(inside || (e0 + a0 * k >= t0 && e1 + a1 * k >= t1 && e2 + a2 * k >= t2))
+                            {
+                                int i = row + x;
+                                double z = rowZ + dzdx * k;
+                                if(FrameStats.ENABLED)
+                                {
+                                    tested++;
+                                }
+                                if(z < depth[i] - EPSILON)
+                                {
+                                    depth[i] = (float) z;
+                                    pixels[i] = color;
+                                    written = true;
+                                    if(FrameStats.ENABLED)
+                                    {
+                                        wrote++;
+                                    }
+                                }
+                            }
+                        }
+                        e0 += b0;
+                        e1 += b1;
+                        e2 += b2;
+                        rowZ += dzdy;
+                    }
+                }
+                else
+                {
+                    // The same loop writing the triangle's id too, kept apart so frames without
+                    // picking run a pixel loop with no id store or test in it
+                    for(int y = by; y < yTo; y++)
+                    {
+                        int row = y * width;
+                        for(int x = bx; x < xTo; x++)
+                        {
+                            int k = x - bx;
+                            if(inside || (e0 + a0 * k >= t0 && e1 + a1 * k >= t1 && e2 + a2 * k >= t2))
+                            {
+                                int i = row + x;
+                                double z = rowZ + dzdx * k;
+                                if(FrameStats.ENABLED)
+                                {
+                                    tested++;
+                                }
+                                if(z < depth[i] - EPSILON)
+                                {
+                                    depth[i] = (float) z;
+                                    pixels[i] = color;
+                                    ids[i] = id;
+                                    written = true;
+                                    if(FrameStats.ENABLED)
+                                    {
+                                        wrote++;
+                                    }
+                                }
+                            }
+                        }
+                        e0 += b0;
+                        e1 += b1;
+                        e2 += b2;
+                        rowZ += dzdy;
+                    }
+                }
+                if(written)
+                {
+                    depthBuffer.updateBlock(bx, by);
+                }
+            }
+        }
+        if(FrameStats.ENABLED)
+        {
+            this.pixelsTested += tested;
+            this.pixelsWritten += wrote;
+        }
+    }
+
+    // With positive-inside edges in y-down screen space, left edges have the interior towards +x
+    // and top edges are horizontal with the interior below them
+    private static boolean isTopLeft(long a, long b)
+    {
+        return a > 0 || (a == 0 && b > 0);
+    }
+    private static long ceilDiv(long x, long y)
+    {
+        return -Math.floorDiv(-x, y);
+    }
+}
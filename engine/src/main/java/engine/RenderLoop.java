@@ -0,0 +1,208 @@
+package engine;
+
+import java.awt.Graphics;
+import java.awt.image.ImageObserver;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Renders frames on its own thread into two preallocated frame buffers, alternating between
+// them, and hands each finished one over to be blitted on the EDT. Input reaches the render
+// thread as posted tasks that run between frames, so the scene and camera are only ever touched
+// by that thread.
+class RenderLoop implements Runnable
+{
+    enum Pacing
+    {
+        // Starts the next frame as soon as the last one is done
+        UNCAPPED,
+        // Starts frames on a fixed grid of period, dropping the slots a slow frame overran
+        FIXED_RATE,
+        // Lets every frame take at least period, counted from its own start
+        BUDGET
+    }
+
+    private final FrameBuffer[] frames = new FrameBuffer[2];
+    private int back;
+    // Last finished frame; only swapped and blitted while holding presentLock
+    private FrameBuffer front;
+    private final Object presentLock = new Object();
+
+    private final Consumer<FrameBuffer> scene;
+    private final Runnable present;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile Pacing pacing = Pacing.UNCAPPED;
+    private volatile long periodNanos;
+    private volatile boolean running;
+    private Thread thread;
+    // Only measured when FrameStats.ENABLED
+    private volatile long frameNanos;
+    private volatile long presentNanos;
+
+    // scene draws one whole frame into the buffer it is given; present is called after every
+    // finished frame and should only schedule the blit, e.g. a component's repaint
+    public RenderLoop(int width, int height, Consumer<FrameBuffer> scene, Runnable present)
+    {
+        this.frames[0] = new FrameBuffer(width, height);
+        this.frames[1] = new FrameBuffer(width, height);
+        this.scene = scene;
+        this.present = present;
+    }
+
+    public void setPacing(Pacing pacing, long periodNanos)
+    {
+        assert pacing == Pacing.UNCAPPED || periodNanos > 0;
+        this.periodNanos = periodNanos;
+        this.pacing = pacing;
+    }
+
+    // Runs task on the render thread before the next frame starts
+    public void post(Runnable task)
+    {
+        this.tasks.add(task);
+    }
+
+    // Makes frames record what was drawn at each pixel so pick can answer, from the next frame on
+    public void setPicking(boolean picking)
+    {
+        post(() -> {
+            synchronized(this.presentLock)
+            {
+                this.frames[0].setPicking(picking);
+                this.frames[1].setPicking(picking);
+            }
+        });
+    }
+
+    public synchronized void start()
+    {
+        if(this.thread != null)
+        {
+            return;
+        }
+        this.running = true;
+        this.thread = new Thread(this, "render");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    public synchronized void stop() throws InterruptedException
+    {
+        if(this.thread == null)
+        {
+            return;
+        }
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        this.thread.join();
+        this.thread = null;
+    }
+
+    @Override
+    public void run()
+    {
+        long next = System.nanoTime();
+        while(this.running)
+        {
+            Runnable task;
+            while((task = this.tasks.poll()) != null)
+            {
+                task.run();
+            }
+
+            long start = System.nanoTime();
+            FrameBuffer frame = this.frames[this.back];
+            this.scene.accept(frame);
+            synchronized(this.presentLock)
+            {
+                this.front = frame;
+            }
+            // The old front is not blitted again once front moved, so it can be drawn over
+            this.back ^= 1;
+            if(FrameStats.ENABLED)
+            {
+                this.frameNanos = System.nanoTime() - start;
+            }
+            this.present.run();
+
+            long period = this.periodNanos;
+            switch(this.pacing)
+            {
+                case FIXED_RATE:
+                    next += period;
+                    long now = System.nanoTime();
+                    if(now > next)
+                    {
+                        next += (now - next + period - 1) / period * period;
+                    }
+                    sleepUntil(next);
+                    break;
+                case BUDGET:
+                    sleepUntil(start + period);
+                    next = System.nanoTime();
+                    break;
+                default:
+                    next = System.nanoTime();
+                    break;
+            }
+        }
+    }
+    private void sleepUntil(long deadline)
+    {
+        long left;
+        while(this.running && (left = deadline - System.nanoTime()) > 0)
+        {
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    // Blits the last finished frame with its top left corner at (x, y); does nothing before
+    // the first frame is done. Called on the EDT from paint.
+    public void present(Graphics g, int x, int y, ImageObserver observer)
+    {
+        PresentEvent event = null;
+        long start = 0;
+        if(FrameStats.ENABLED)
+        {
+            event = new PresentEvent();
+            event.begin();
+            start = System.nanoTime();
+        }
+        synchronized(this.presentLock)
+        {
+            if(this.front != null)
+            {
+                g.drawImage(this.front.image, x, y, observer);
+            }
+        }
+        if(FrameStats.ENABLED)
+        {
+            this.presentNanos = System.nanoTime() - start;
+            event.commit();
+        }
+    }
+
+    // What the last finished frame drew at (x, y) of the frame, or null where it drew nothing or
+    // was not picking. Safe to call from any thread.
+    public Pick pick(int x, int y)
+    {
+        synchronized(this.presentLock)
+        {
+            if(this.front == null || this.front.ids == null)
+            {
+                return null;
+            }
+            return this.front.ids.pick(x, y);
+        }
+    }
+
+    // Render thread time of the last frame, scene callback included
+    public long getFrameNanos()
+    {
+        return this.frameNanos;
+    }
+    // Time the last present took on the EDT
+    public long getPresentNanos()
+    {
+        return this.presentNanos;
+    }
+}
@@ -0,0 +1,466 @@
+package engine;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Draws a whole scene per frame. Objects completely outside the camera frustum are dropped
+// first, by testing each or by walking a Bvh over them, the rest are put in front-to-back order
+// so the depth test rejects what they hide as early as it can, and each picks a level of detail
+// from its size on screen. Their vertices are pushed through model -> view -> projection into
+// one clip-space buffer, each object's visible triangles are set up from it, and the triangles
+// are binned into screen tiles that rasterize in parallel. With a visibility buffer the setup
+// leaves out the lighting and the tiles rasterize only depth and triangle slots, then shade
+// each covered pixel once in a second parallel pass. As a wireframe each object's edges are
+// drawn from the clip buffer instead, with no setup, tiles or depth.
+class Renderer
+{
+    private final ClipBuffer clip = new ClipBuffer(0);
+    private final TriangleBuffer triangles = new TriangleBuffer(0);
+    private final ForkJoinPool pool;
+    private TileGrid tiles;
+    // Set by setVisibilityBuffer; the buffer is made at the size of the first frame drawn with it
+    private boolean deferShading;
+    private VisibilityBuffer visibility;
+    private final Lights lights = Lights.standard();
+    // Set by setWireframe
+    private boolean wireframe;
+    private boolean flatDiagonals;
+    private final Wireframe wire = new Wireframe();
+
+    private final Frustum frustum = new Frustum();
+    // What the frustum was last extracted for
+    private Camera frustumCamera;
+    private int frustumVersion;
+    private double frustumScale;
+    private int frustumCenter;
+    private int frustumWidth;
+    private int frustumHeight;
+    private int[] visible = new int[0];
+    private int visibleCount;
+    private int culledCount;
+    // Sorts visible front to back by the view depth of the instances' centers when depthOrder
+    private boolean depthOrder = true;
+    private final DepthSort depthSort = new DepthSort();
+    private int[] depthKeys = new int[0];
+
+    // Pixels across per unit of world radius over W, from the same screen-space view-projection
+    // the frustum came from
+    private final Mat4 screenMatrix = new Mat4();
+    private double lodScale;
+    // visible, reordered by level: level l's instances are lodOrder[levelStart[l]..levelStart[l + 1])
+    private int[] lodOrder = new int[0];
+    private int[] levelStart = new int[LodMesh.MAX_LEVELS + 1];
+    // Wraps a plain mesh drawn through drawInstances(..., Mesh, ...)
+    private LodMesh single;
+
+    private final Mat4 mvpMatrix = new Mat4();
+    private final NormalMatrix normals = new NormalMatrix();
+
+    // Filled while a frame is drawn and copied into lastStats when it is done, only when
+    // FrameStats.ENABLED
+    private final FrameStats stats = new FrameStats();
+    private volatile FrameStats lastStats;
+
+    public Renderer()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+    public Renderer(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    // Whether frames are rasterized into a visibility buffer and shaded per pixel afterwards,
+    // instead of lighting every front-facing triangle as it is set up. Both draw the same picture.
+    public void setVisibilityBuffer(boolean visibilityBuffer)
+    {
+        this.deferShading = visibilityBuffer;
+        if(!visibilityBuffer)
+        {
+            this.visibility = null;
+        }
+    }
+
+    // Whether objects are drawn front to back or in the order they were submitted in
+    public void setDepthOrder(boolean depthOrder)
+    {
+        this.depthOrder = depthOrder;
+    }
+
+    // Whether frames are drawn as the edges of every object, unlit and all showing through,
+    // instead of filled. flatDiagonals keeps the edges that split flat faces into triangles.
+    public void setWireframe(boolean wireframe, boolean flatDiagonals)
+    {
+        this.wireframe = wireframe;
+        this.flatDiagonals = flatDiagonals;
+    }
+
+    // What the scene is lit by; changed between frames by the thread that draws
+    public Lights getLights()
+    {
+        return this.lights;
+    }
+
+    // Number of objects the last frame dropped before any per-vertex work
+    public int getCulledCount()
+    {
+        return this.culledCount;
+    }
+    // Number of triangles the last frame sent to the rasterizer
+    public int getTriangleCount()
+    {
+        return this.triangles.size;
+    }
+    // Timers and counters of the last finished drawInstances call, or null when stats are off or
+    // nothing was drawn yet. Safe to read from any thread; the snapshot is never changed again.
+    public FrameStats getStats()
+    {
+        return this.lastStats;
+    }
+
+    // Leaves the indices of the instances not completely outside the frustum in visible
+    public int cull(Mesh mesh, Instance[] instances, int count, Camera camera, double scale, int center, int width, int height)
+    {
+        if(this.visible.length < count)
+        {
+            this.visible = new int[count];
+        }
+        updateFrustum(camera, scale, center, width, height);
+        int visibleCount = 0;
+        for(int i = 0; i < count; i++)
+        {
+            if(!this.frustum.culls(mesh.bounds, instances[i].getModel(this.mvpMatrix)))
+            {
+                this.visible[visibleCount++] = i;
+            }
+        }
+        this.visibleCount = visibleCount;
+        this.culledCount = count - visibleCount;
+        return visibleCount;
+    }
+    // The same through index, visiting only the nodes that reach into the frustum
+    public int cull(Bvh index, Camera camera, double scale, int center, int width, int height)
+    {
+        updateFrustum(camera, scale, center, width, height);
+        this.visibleCount = index.queryFrustum(this.frustum);
+        if(this.visible.length < this.visibleCount)
+        {
+            this.visible = new int[index.getResults().length];
+        }
+        System.arraycopy(index.getResults(), 0, this.visible, 0, this.visibleCount);
+        // Back into submission order, which depth ties depend on and DepthSort takes, so the
+        // picture does not change with the shape of the tree
+        java.util.Arrays.sort(this.visible, 0, this.visibleCount);
+        this.culledCount = index.count - this.visibleCount;
+        return this.visibleCount;
+    }
+    private void updateFrustum(Camera camera, double scale, int center, int width, int height)
+    {
+        if(camera != this.frustumCamera || camera.getVersion() != this.frustumVersion || scale != this.frustumScale
+                || center != this.frustumCenter || width != this.frustumWidth || height != this.frustumHeight)
+        {
+            camera.getFrustum(this.frustum, scale, center, width, height);
+            double[] m = camera.getScreenViewProjection(this.screenMatrix, scale, center).m;
+            double x0 = m[0] - center * m[12], x1 = m[1] - center * m[13], x2 = m[2] - center * m[14];
+            double y0 = m[4] - center * m[12], y1 = m[5] - center * m[13], y2 = m[6] - center * m[14];
+            this.lodScale = 2 * Math.sqrt(Math.max(x0 * x0 + x1 * x1 + x2 * x2, y0 * y0 + y1 * y1 + y2 * y2));
+            this.frustumCamera = camera;
+            this.frustumVersion = camera.getVersion();
+            this.frustumScale = scale;
+            this.frustumCenter = center;
+            this.frustumWidth = width;
+            this.frustumHeight = height;
+        }
+    }
+
+    // Sorts visible front to back by the view depth of the centers of bounds placed by the instances
+    private void sortByDepth(Bounds bounds, Instance[] instances, int count, Camera camera)
+    {
+        if(this.depthKeys.length < this.visibleCount)
+        {
+            this.depthKeys = new int[this.visible.length];
+        }
+        double[] w = this.screenMatrix.m;
+        double keyScale = DepthSort.MAX_KEY / camera.far;
+        for(int k = 0; k < this.visibleCount; k++)
+        {
+            double[] m = instances[this.visible[k]].getModel(this.mvpMatrix).m;
+            double cx = m[0] * bounds.centerX + m[1] * bounds.centerY + m[2] * bounds.centerZ + m[3];
+            double cy = m[4] * bounds.centerX + m[5] * bounds.centerY + m[6] * bounds.centerZ + m[7];
+            double cz = m[8] * bounds.centerX + m[9] * bounds.centerY + m[10] * bounds.centerZ + m[11];
+            double depth = w[12] * cx + w[13] * cy + w[14] * cz + w[15];
+            // Centers behind the camera plane sort first with the nearest
+            this.depthKeys[k] = (int) Math.min(Math.max(depth * keyScale, 0), DepthSort.MAX_KEY);
+        }
+        this.depthSort.sort(this.visible, this.depthKeys, this.visibleCount, count);
+    }
+
+    // Picks every visible instance's level from the pixel diameter of its bounding sphere and
+    // sorts visible by level into lodOrder, keeping their order within each level. Finer levels
+    // are the nearer ones, so front to back stays about right across levels too. Returns the
+    // triangles the coarser levels saved.
+    private long selectLevels(LodMesh lods, Instance[] instances)
+    {
+        if(this.lodOrder.length < this.visibleCount)
+        {
+            this.lodOrder = new int[this.visibleCount];
+        }
+        int levels = lods.levels.length;
+        java.util.Arrays.fill(this.levelStart, 0);
+        if(levels == 1)
+        {
+            System.arraycopy(this.visible, 0, this.lodOrder, 0, this.visibleCount);
+            this.levelStart[1] = this.visibleCount;
+            return 0;
+        }
+
+        Bounds bounds = lods.levels[0].bounds;
+        double[] w = this.screenMatrix.m;
+        long saved = 0;
+        for(int k = 0; k < this.visibleCount; k++)
+        {
+            Instance instance = instances[this.visible[k]];
+            double[] m = instance.getModel(this.mvpMatrix).m;
+            double cx = m[0] * bounds.centerX + m[1] * bounds.centerY + m[2] * bounds.centerZ + m[3];
+            double cy = m[4] * bounds.centerX + m[5] * bounds.centerY + m[6] * bounds.centerZ + m[7];
+            double cz = m[8] * bounds.centerX + m[9] * bounds.centerY + m[10] * bounds.centerZ + m[11];
+            double sx = m[0] * m[0] + m[4] * m[4] + m[8] * m[8];
+            double sy = m[1] * m[1] + m[5] * m[5] + m[9] * m[9];
+            double sz = m[2] * m[2] + m[6] * m[6] + m[10] * m[10];
+            double radius = bounds.radius * Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+            double depth = w[12] * cx + w[13] * cy + w[14] * cz + w[15];
+            // Spheres reaching the camera plane get the full mesh
+            double size = depth > radius ? radius * this.lodScale / depth : Double.POSITIVE_INFINITY;
+
+            int level = lods.select(instance.lod, size);
+            instance.lod = (byte) level;
+            this.levelStart[level + 1]++;
+            saved += lods.levels[0].triangleCount - lods.levels[level].triangleCount;
+        }
+        for(int l = 0; l < levels; l++)
+        {
+            this.levelStart[l + 1] += this.levelStart[l];
+        }
+        // levelStart[l] is the next free slot of level l while filling, and the end of level l - 1
+        // afterwards; shifting once restores the starts
+        for(int k = 0; k < this.visibleCount; k++)
+        {
+            int i = this.visible[k];
+            this.lodOrder[this.levelStart[instances[i].lod]++] = i;
+        }
+        for(int l = levels; l > 0; l--)
+        {
+            this.levelStart[l] = this.levelStart[l - 1];
+        }
+        this.levelStart[0] = 0;
+        return saved;
+    }
+
+    // Fills the clip buffer with the mesh placed by instances[indices[0..count)], one
+    // mesh-sized run per instance, reusing the buffer between frames
+    public ClipBuffer transformScene(Mesh mesh, Instance[] instances, int[] indices, int count,
+                                     Camera camera, double scale, int center)
+    {
+        int total = count * mesh.vertices.size;
+        this.clip.ensureCapacity(total);
+        this.clip.size = total;
+        transform(mesh, instances, indices, 0, count, 0, camera);
+        this.clip.project(camera, scale, center, 0, total);
+        return this.clip;
+    }
+    // Transforms instances[indices[from..to)] into consecutive runs of the clip buffer from base
+    private void transform(Mesh mesh, Instance[] instances, int[] indices, int from, int to, int base, Camera camera)
+    {
+        Mat4 viewProjection = camera.getViewProjection();
+        for(int k = from; k < to; k++)
+        {
+            instances[indices[k]].getModel(this.mvpMatrix);
+            Mat4.mulInto(this.mvpMatrix, viewProjection, this.mvpMatrix);
+            this.clip.transform(mesh.vertices, this.mvpMatrix, base + (k - from) * mesh.vertices.size);
+        }
+    }
+
+    public void drawFilled(FrameBuffer frame, DepthBuffer depth, Cube[] cubes, Camera camera, double scale, int center)
+    {
+        drawInstances(frame, depth, Mesh.CUBE, cubes, cubes.length, camera, scale, center);
+    }
+
+    // Draws the first count instances of one mesh as a single batch
+    public void drawInstances(FrameBuffer frame, DepthBuffer depth, Mesh mesh, Instance[] instances, int count,
+                              Camera camera, double scale, int center)
+    {
+        if(this.single == null || this.single.levels[0] != mesh)
+        {
+            this.single = new LodMesh(mesh);
+        }
+        drawInstances(frame, depth, this.single, instances, count, camera, scale, center);
+    }
+    // Draws the first count instances as a single batch, each at the level of detail its size
+    // on screen calls for
+    public void drawInstances(FrameBuffer frame, DepthBuffer depth, LodMesh lods, Instance[] instances, int count,
+                              Camera camera, double scale, int center)
+    {
+        draw(frame, depth, lods, instances, count, null, camera, scale, center);
+    }
+    // Draws the instances index was built over, culling them through it
+    public void drawInstances(FrameBuffer frame, DepthBuffer depth, LodMesh lods, Bvh index,
+                              Camera camera, double scale, int center)
+    {
+        draw(frame, depth, lods, index.instances, index.count, index, camera, scale, center);
+    }
+    private void draw(FrameBuffer frame, DepthBuffer depth, LodMesh lods, Instance[] instances, int count, Bvh index,
+                      Camera camera, double scale, int center)
+    {
+        FrameEvent event = null;
+        long time = 0;
+        if(FrameStats.ENABLED)
+        {
+            event = new FrameEvent();
+            event.begin();
+            this.stats.reset(frame.width * frame.height);
+            time = System.nanoTime();
+        }
+
+        Mesh[] levels = lods.levels;
+        if(index == null)
+        {
+            cull(levels[0], instances, count, camera, scale, center, frame.width, frame.height);
+        }
+        else
+        {
+            cull(index, camera, scale, center, frame.width, frame.height);
+        }
+        if(this.depthOrder)
+        {
+            if(FrameStats.ENABLED)
+            {
+                time = this.stats.stage(FrameStats.CULL, time);
+            }
+            sortByDepth(levels[0].bounds, instances, count, camera);
+            if(FrameStats.ENABLED)
+            {
+                time = this.stats.stage(FrameStats.SORT, time);
+            }
+        }
+        long saved = selectLevels(lods, instances);
+        if(FrameStats.ENABLED)
+        {
+            time = this.stats.stage(FrameStats.CULL, time);
+        }
+
+        int total = 0;
+        for(int l = 0; l < levels.length; l++)
+        {
+            total += (this.levelStart[l + 1] - this.levelStart[l]) * levels[l].vertices.size;
+        }
+        this.clip.ensureCapacity(total);
+        this.clip.size = total;
+        int base = 0;
+        for(int l = 0; l < levels.length; l++)
+        {
+            transform(levels[l], instances, this.lodOrder, this.levelStart[l], this.levelStart[l + 1], base, camera);
+            base += (this.levelStart[l + 1] - this.levelStart[l]) * levels[l].vertices.size;
+        }
+        this.clip.project(camera, scale, center, 0, total);
+        if(FrameStats.ENABLED)
+        {
+            time = this.stats.stage(FrameStats.TRANSFORM, time);
+        }
+
+        this.triangles.clear();
+        if(this.wireframe)
+        {
+            drawWireframe(frame, levels, camera, scale, center);
+            if(FrameStats.ENABLED)
+            {
+                this.stats.stage(FrameStats.RASTER, time);
+                this.wire.collectStats(this.stats);
+                commitStats(event, count, 0, saved);
+            }
+            return;
+        }
+        base = 0;
+        int drawnTriangles = 0;
+        for(int l = 0; l < levels.length; l++)
+        {
+            Mesh mesh = levels[l];
+            for(int k = this.levelStart[l]; k < this.levelStart[l + 1]; k++)
+            {
+                mesh.setupTriangles(camera, this.clip, base, this.lodOrder[k], instances[this.lodOrder[k]],
+                        this.normals, this.lights, this.deferShading, this.triangles);
+                base += mesh.vertices.size;
+            }
+            drawnTriangles += (this.levelStart[l + 1] - this.levelStart[l]) * mesh.triangleCount;
+        }
+        if(FrameStats.ENABLED)
+        {
+            time = this.stats.stage(FrameStats.SETUP, time);
+        }
+
+        if(this.tiles == null || this.tiles.width != frame.width || this.tiles.height != frame.height)
+        {
+            this.tiles = new TileGrid(frame.width, frame.height, this.pool);
+        }
+        this.tiles.bin(this.triangles);
+        if(FrameStats.ENABLED)
+        {
+            time = this.stats.stage(FrameStats.BIN, time);
+        }
+        if(this.deferShading)
+        {
+            if(this.visibility == null || this.visibility.width != frame.width || this.visibility.height != frame.height)
+            {
+                this.visibility = new VisibilityBuffer(frame.width, frame.height);
+            }
+            this.tiles.rasterize(this.visibility, depth, this.triangles);
+            if(FrameStats.ENABLED)
+            {
+                time = this.stats.stage(FrameStats.RASTER, time);
+            }
+            this.tiles.resolve(this.visibility, frame, this.triangles, this.lights);
+        }
+        else
+        {
+            this.tiles.rasterize(frame, depth, this.triangles);
+            if(FrameStats.ENABLED)
+            {
+                time = this.stats.stage(FrameStats.RASTER, time);
+            }
+        }
+        if(frame.ids != null)
+        {
+            frame.ids.resolve(this.triangles);
+        }
+        if(FrameStats.ENABLED)
+        {
+            this.stats.stage(FrameStats.SHADE, time);
+            this.tiles.collectStats(this.stats);
+            commitStats(event, count, drawnTriangles, saved);
+        }
+    }
+    // Draws the edges of every instance in lodOrder, whose vertices fill the clip buffer in that order
+    private void drawWireframe(FrameBuffer frame, Mesh[] levels, Camera camera, double scale, int center)
+    {
+        this.wire.setTarget(frame);
+        int base = 0;
+        for(int l = 0; l < levels.length; l++)
+        {
+            Mesh mesh = levels[l];
+            int[] edges = mesh.edges(this.flatDiagonals);
+            for(int k = this.levelStart[l]; k < this.levelStart[l + 1]; k++)
+            {
+                this.wire.drawEdges(this.clip, camera, scale, center, base, edges);
+                base += mesh.vertices.size;
+            }
+        }
+    }
+    private void commitStats(FrameEvent event, int count, int drawnTriangles, long saved)
+    {
+        this.stats.objectsSubmitted = count;
+        this.stats.objectsCulled = this.culledCount;
+        this.stats.triangles = drawnTriangles;
+        this.stats.trianglesSavedByLod = saved;
+        this.stats.trianglesBackFacing = this.stats.triangles - this.triangles.size;
+        this.stats.commit(event);
+        this.lastStats = this.stats.copy();
+    }
+}
@@ -0,0 +1,12 @@
+package engine;
+
+// Whether the vertex transform and the triangle fill run through VectorKernels. They need the
+// incubating jdk.incubator.vector module, so this is only on when the JVM was started with
+// --add-modules jdk.incubator.vector, and -Dengine.simd=false turns it off again to compare.
+// Otherwise the scalar loops run and the kernels are never loaded. ENABLED is a static final,
+// so the JIT folds the choice away like FrameStats.ENABLED.
+class Simd
+{
+    static final boolean ENABLED = !"false".equals(System.getProperty("engine.simd"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+}
@@ -0,0 +1,207 @@
+package engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Splits the screen into TILE x TILE tiles, bins triangles into every tile their bounds touch
+// and rasterizes the tiles in parallel. A tile's rasterizer is clipped to the tile, so each tile
+// owns its pixels and depth values and the workers never need to lock. A VisibilityBuffer is
+// resolved the same way, a tile per task.
+class TileGrid
+{
+    static final int TILE = 64;
+
+    final int width;
+    final int height;
+    final int tilesX;
+    final int tilesY;
+    private final int[][] bins;
+    private final int[] binSize;
+    private final Rasterizer[] rasterizers;
+    private final ForkJoinPool pool;
+    // Splits the tiles in halves down to one each; made once and reinitialized for every run
+    private final TileTask root;
+    // What run and resolve work on while they run
+    private TriangleBuffer triangles;
+    private boolean resolving;
+    private VisibilityBuffer visibility;
+    private FrameBuffer frame;
+    private Lights lights;
+
+    public TileGrid(int width, int height, ForkJoinPool pool)
+    {
+        assert TILE % Rasterizer.BLOCK == 0;
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE - 1) / TILE;
+        this.tilesY = (height + TILE - 1) / TILE;
+        int count = this.tilesX * this.tilesY;
+        this.bins = new int[count][64];
+        this.binSize = new int[count];
+        this.rasterizers = new Rasterizer[count];
+        for(int i = 0; i < count; i++)
+        {
+            this.rasterizers[i] = new Rasterizer();
+        }
+        this.pool = pool;
+        this.root = new TileTask(0, count);
+    }
+
+    // Adds every triangle to the bins of the tiles its screen bounds touch, keeping list order
+    public void bin(TriangleBuffer triangles)
+    {
+        java.util.Arrays.fill(this.binSize, 0);
+        double[] v = triangles.coords;
+        for(int t = 0; t < triangles.size; t++)
+        {
+            int o = t * TriangleBuffer.STRIDE;
+            double minX = Math.min(v[o], Math.min(v[o + 3], v[o + 6]));
+            double maxX = Math.max(v[o], Math.max(v[o + 3], v[o + 6]));
+            double minY = Math.min(v[o + 1], Math.min(v[o + 4], v[o + 7]));
+            double maxY = Math.max(v[o + 1], Math.max(v[o + 4], v[o + 7]));
+
+            // Snapping to subpixels can move a vertex a little past its bounds, so they reach one
+            // pixel further right and down
+            int tx0 = Math.max((int) Math.floor(minX), 0) / TILE;
+            int ty0 = Math.max((int) Math.floor(minY), 0) / TILE;
+            int tx1 = Math.min((int) Math.floor(maxX) + 1, this.width - 1);
+            int ty1 = Math.min((int) Math.floor(maxY) + 1, this.height - 1);
+            if(tx1 < 0 || ty1 < 0 || tx0 >= this.tilesX || ty0 >= this.tilesY)
+            {
+                continue;
+            }
+            tx1 /= TILE;
+            ty1 /= TILE;
+            for(int ty = ty0; ty <= ty1; ty++)
+            {
+                for(int tx = tx0; tx <= tx1; tx++)
+                {
+                    add(ty * this.tilesX + tx, t);
+                }
+            }
+        }
+    }
+    private void add(int tile, int triangle)
+    {
+        int[] bin = this.bins[tile];
+        int size = this.binSize[tile];
+        if(size == bin.length)
+        {
+            bin = java.util.Arrays.copyOf(bin, size * 2);
+            this.bins[tile] = bin;
+        }
+        bin[size] = triangle;
+        this.binSize[tile] = size + 1;
+    }
+
+    // Rasterizes every non-empty tile's bin on the pool
+    public void rasterize(FrameBuffer frameBuffer, DepthBuffer depth, TriangleBuffer triangles)
+    {
+        assert frameBuffer.width == this.width && frameBuffer.height == this.height;
+        for(Rasterizer rasterizer : this.rasterizers)
+        {
+            rasterizer.setTarget(frameBuffer, depth);
+        }
+        rasterize(triangles);
+    }
+    // The same writing triangle slots into visibility in place of colors
+    public void rasterize(VisibilityBuffer visibility, DepthBuffer depth, TriangleBuffer triangles)
+    {
+        assert visibility.width == this.width && visibility.height == this.height;
+        for(Rasterizer rasterizer : this.rasterizers)
+        {
+            rasterizer.setTarget(visibility, depth);
+        }
+        rasterize(triangles);
+    }
+    private void rasterize(TriangleBuffer triangles)
+    {
+        for(int i = 0; i < this.rasterizers.length; i++)
+        {
+            int tx = (i % this.tilesX) * TILE;
+            int ty = (i / this.tilesX) * TILE;
+            this.rasterizers[i].setClip(tx, ty, tx + TILE, ty + TILE);
+        }
+        run(triangles, false);
+    }
+    // Shades visibility into frame tile by tile on the pool, from the triangles it was
+    // rasterized from, by lights
+    public void resolve(VisibilityBuffer visibility, FrameBuffer frame, TriangleBuffer triangles, Lights lights)
+    {
+        assert visibility.width == this.width && visibility.height == this.height;
+        this.visibility = visibility;
+        this.frame = frame;
+        this.lights = lights;
+        run(triangles, true);
+        this.visibility = null;
+        this.frame = null;
+        this.lights = null;
+    }
+    private void run(TriangleBuffer triangles, boolean resolve)
+    {
+        if(this.pool.getParallelism() <= 1)
+        {
+            for(int i = 0; i < this.rasterizers.length; i++)
+            {
+                runTile(i, triangles, resolve);
+            }
+            return;
+        }
+        this.triangles = triangles;
+        this.resolving = resolve;
+        this.root.reinitialize();
+        this.pool.invoke(this.root);
+        this.triangles = null;
+    }
+    // Adds every tile's counts from the frames rasterized since the last call to stats
+    public void collectStats(FrameStats stats)
+    {
+        for(Rasterizer rasterizer : this.rasterizers)
+        {
+            rasterizer.collectStats(stats);
+        }
+    }
+    private void runTile(int tile, TriangleBuffer triangles, boolean resolve)
+    {
+        if(resolve)
+        {
+            int tx = (tile % this.tilesX) * TILE;
+            int ty = (tile / this.tilesX) * TILE;
+            this.visibility.resolve(this.frame, triangles, this.lights, tx, ty,
+                    Math.min(tx + TILE, this.width), Math.min(ty + TILE, this.height));
+        }
+        else if(this.binSize[tile] > 0)
+        {
+            this.rasterizers[tile].drawTriangles(triangles, this.bins[tile], this.binSize[tile]);
+        }
+    }
+
+    private class TileTask extends RecursiveAction
+    {
+        private final int from;
+        // Both null for a single tile
+        private final TileTask left;
+        private final TileTask right;
+
+        TileTask(int from, int to)
+        {
+            this.from = from;
+            int mid = (from + to) >>> 1;
+            this.left = to - from > 1 ? new TileTask(from, mid) : null;
+            this.right = to - from > 1 ? new TileTask(mid, to) : null;
+        }
+        @Override
+        protected void compute()
+        {
+            if(this.left == null)
+            {
+                runTile(this.from, TileGrid.this.triangles, TileGrid.this.resolving);
+                return;
+            }
+            // Finished in the last run, so they have to be reset before they can be forked again
+            this.left.reinitialize();
+            this.right.reinitialize();
+            invokeAll(this.left, this.right);
+        }
+    }
+}
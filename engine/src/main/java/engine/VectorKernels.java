@@ -0,0 +1,204 @@
+package engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API versions of the hot scalar loops, only loaded when Simd.ENABLED. Each works on as
+// many lanes as the CPU's widest double registers hold, 4 with AVX2 and 8 with AVX-512, and does
+// the same operations in the same order as the scalar loop it stands in for, so the results are
+// the same to the bit.
+class VectorKernels
+{
+    static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // As many floats and ints as DOUBLES has lanes, so masks can be cast between the three
+    static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class,
+            VectorShape.forBitSize(DOUBLES.length() * Float.SIZE));
+    static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class,
+            VectorShape.forBitSize(DOUBLES.length() * Integer.SIZE));
+
+    // ClipBuffer.transform for whole vectors of vertices; returns how many it did, leaving the
+    // rest for the scalar loop
+    static int transform(VertexBuffer src, Mat4 m, ClipBuffer dst, int offset)
+    {
+        double[] M = m.m;
+        DoubleVector m00 = DoubleVector.broadcast(DOUBLES, M[0]), m01 = DoubleVector.broadcast(DOUBLES, M[1]);
+        DoubleVector m02 = DoubleVector.broadcast(DOUBLES, M[2]), m03 = DoubleVector.broadcast(DOUBLES, M[3]);
+        DoubleVector m10 = DoubleVector.broadcast(DOUBLES, M[4]), m11 = DoubleVector.broadcast(DOUBLES, M[5]);
+        DoubleVector m12 = DoubleVector.broadcast(DOUBLES, M[6]), m13 = DoubleVector.broadcast(DOUBLES, M[7]);
+        DoubleVector m20 = DoubleVector.broadcast(DOUBLES, M[8]), m21 = DoubleVector.broadcast(DOUBLES, M[9]);
+        DoubleVector m22 = DoubleVector.broadcast(DOUBLES, M[10]), m23 = DoubleVector.broadcast(DOUBLES, M[11]);
+        DoubleVector m30 = DoubleVector.broadcast(DOUBLES, M[12]), m31 = DoubleVector.broadcast(DOUBLES, M[13]);
+        DoubleVector m32 = DoubleVector.broadcast(DOUBLES, M[14]), m33 = DoubleVector.broadcast(DOUBLES, M[15]);
+        double[] sx = src.x, sy = src.y, sz = src.z;
+        double[] dx = dst.x, dy = dst.y, dz = dst.z, dw = dst.w;
+        int n = DOUBLES.loopBound(src.size);
+        for(int i = 0; i < n; i += DOUBLES.length())
+        {
+            DoubleVector vx = DoubleVector.fromArray(DOUBLES, sx, i);
+            DoubleVector vy = DoubleVector.fromArray(DOUBLES, sy, i);
+            DoubleVector vz = DoubleVector.fromArray(DOUBLES, sz, i);
+            int j = offset + i;
+            m00.mul(vx).add(m01.mul(vy)).add(m02.mul(vz)).add(m03).intoArray(dx, j);
+            m10.mul(vx).add(m11.mul(vy)).add(m12.mul(vz)).add(m13).intoArray(dy, j);
+            m20.mul(vx).add(m21.mul(vy)).add(m22.mul(vz)).add(m23).intoArray(dz, j);
+            m30.mul(vx).add(m31.mul(vy)).add(m32.mul(vz)).add(m33).intoArray(dw, j);
+        }
+        return n;
+    }
+
+    // ClipBuffer.project for whole vectors of vertices from from on; returns where it stopped
+    static int project(ClipBuffer clip, Camera camera, double scale, int center, int from, int to)
+    {
+        double[] P = camera.perspective.m;
+        DoubleVector p00 = DoubleVector.broadcast(DOUBLES, P[0]), p01 = DoubleVector.broadcast(DOUBLES, P[1]);
+        DoubleVector p02 = DoubleVector.broadcast(DOUBLES, P[2]), p03 = DoubleVector.broadcast(DOUBLES, P[3]);
+        DoubleVector p10 = DoubleVector.broadcast(DOUBLES, P[4]), p11 = DoubleVector.broadcast(DOUBLES, P[5]);
+        DoubleVector p12 = DoubleVector.broadcast(DOUBLES, P[6]), p13 = DoubleVector.broadcast(DOUBLES, P[7]);
+        DoubleVector p20 = DoubleVector.broadcast(DOUBLES, P[8]), p21 = DoubleVector.broadcast(DOUBLES, P[9]);
+        DoubleVector p22 = DoubleVector.broadcast(DOUBLES, P[10]), p23 = DoubleVector.broadcast(DOUBLES, P[11]);
+        double near = camera.near;
+        double depthScale = 1 / (camera.far - camera.near);
+        double[] cx = clip.x, cy = clip.y, cz = clip.z;
+        int end = from + DOUBLES.loopBound(to - from);
+        for(int i = from; i < end; i += DOUBLES.length())
+        {
+            DoubleVector vx = DoubleVector.fromArray(DOUBLES, cx, i);
+            DoubleVector vy = DoubleVector.fromArray(DOUBLES, cy, i);
+            DoubleVector vz = DoubleVector.fromArray(DOUBLES, cz, i);
+            DoubleVector px = p00.mul(vx).add(p01.mul(vy)).add(p02.mul(vz)).add(p03);
+            DoubleVector py = p10.mul(vx).add(p11.mul(vy)).add(p12.mul(vz)).add(p13);
+            DoubleVector pz = p20.mul(vx).add(p21.mul(vy)).add(p22.mul(vz)).add(p23);
+            px.div(pz).mul(scale).add(center).intoArray(clip.screenX, i);
+            py.div(pz).mul(scale).add(center).intoArray(clip.screenY, i);
+            pz.sub(near).mul(depthScale).intoArray(clip.depth, i);
+        }
+        return end;
+    }
+}
+
+// The pixel loop of Rasterizer.fillTriangle for one full BLOCK wide block, a row of lanes at a
+// time: the edge and depth values of every lane come from the block corner at once, and the
+// coverage and the depth test become a mask. The rasterizer's fixed-point edge values are whole
+// numbers below 2^53, so double lanes hold and step them exactly. Lane masks are never cast
+// between element types and loads and stores are never masked, as both fall off the intrinsics
+// onto slow paths in this incubator. Instead the depth is blended in doubles, the mask becomes
+// int lanes as the bits of floats converted from a vector of ones and zeros, and whole rows of
+// depth, color and id are stored back, the lanes that did not pass with what they held. The
+// rows stay inside the block, which belongs to the calling rasterizer's tile alone.
+// A Rasterizer sets the target and the triangle, then calls fillBlock for each block it walks.
+class VectorFill
+{
+    private static final VectorSpecies<Double> DOUBLES = VectorKernels.DOUBLES;
+    private static final VectorSpecies<Float> FLOATS = VectorKernels.FLOATS;
+    private static final VectorSpecies<Integer> INTS = VectorKernels.INTS;
+    // Lane k holds k, the column of the lane within its vector
+    private static final DoubleVector LANES = DoubleVector.zero(DOUBLES).addIndex(1);
+    private static final DoubleVector ZERO = DoubleVector.zero(DOUBLES);
+
+    private int[] pixels;
+    private float[] depth;
+    private int[] ids;
+    private int width;
+
+    private double a0, a1, a2;
+    private double b0, b1, b2;
+    private double t0, t1, t2;
+    private double dzdx, dzdy;
+    private int color;
+    private int id;
+
+    // Only counted when FrameStats.ENABLED; read and reset by the rasterizer
+    long tested;
+    long wrote;
+
+    public void setTarget(int[] pixels, float[] depth, int[] ids, int width)
+    {
+        this.pixels = pixels;
+        this.depth = depth;
+        this.ids = ids;
+        this.width = width;
+    }
+    public void setTriangle(double a0, double a1, double a2, double b0, double b1, double b2,
+                            double t0, double t1, double t2, double dzdx, double dzdy, int color, int id)
+    {
+        this.a0 = a0;
+        this.a1 = a1;
+        this.a2 = a2;
+        this.b0 = b0;
+        this.b1 = b1;
+        this.b2 = b2;
+        this.t0 = t0;
+        this.t1 = t1;
+        this.t2 = t2;
+        this.dzdx = dzdx;
+        this.dzdy = dzdy;
+        this.color = color;
+        this.id = id;
+    }
+
+    // Fills rows by to yTo of the block at (bx, by) given the edge and depth values at its
+    // corner; returns whether any pixel was written
+    public boolean fillBlock(int bx, int by, int yTo, double e0, double e1, double e2, double rowZ,
+                             boolean inside, double epsilon)
+    {
+        double a0 = this.a0, a1 = this.a1, a2 = this.a2;
+        // A covered block still runs the edge tests, against thresholds every lane passes: a mask
+        // picked on a branch gets boxed where the branches meet
+        double t0 = inside ? Double.NEGATIVE_INFINITY : this.t0;
+        double t1 = inside ? Double.NEGATIVE_INFINITY : this.t1;
+        double t2 = inside ? Double.NEGATIVE_INFINITY : this.t2;
+        double dzdx = this.dzdx;
+        int[] pixels = this.pixels;
+        float[] depth = this.depth;
+        int[] ids = this.ids;
+        int color = this.color, id = this.id;
+        boolean written = false;
+        for(int y = by; y < yTo; y++)
+        {
+            int row = y * this.width;
+            for(int k = 0; k < Rasterizer.BLOCK; k += DOUBLES.length())
+            {
+                DoubleVector lane = LANES.add(k);
+                VectorMask<Double> cover = lane.mul(a0).add(e0).compare(VectorOperators.GE, t0)
+                        .and(lane.mul(a1).add(e1).compare(VectorOperators.GE, t1))
+                        .and(lane.mul(a2).add(e2).compare(VectorOperators.GE, t2));
+                DoubleVector z = lane.mul(dzdx).add(rowZ);
+                int i = row + bx + k;
+                DoubleVector stored = (DoubleVector) FloatVector.fromArray(FLOATS, depth, i)
+                        .convertShape(VectorOperators.F2D, DOUBLES, 0);
+                VectorMask<Double> pass = z.compare(VectorOperators.LT, stored.sub(epsilon)).and(cover);
+                if(FrameStats.ENABLED)
+                {
+                    this.tested += cover.trueCount();
+                }
+                if(!pass.anyTrue())
+                {
+                    continue;
+                }
+                if(FrameStats.ENABLED)
+                {
+                    this.wrote += pass.trueCount();
+                }
+                ((FloatVector) stored.blend(z, pass).convertShape(VectorOperators.D2F, FLOATS, 0)).intoArray(depth, i);
+                VectorMask<Integer> passInts = ((FloatVector) ZERO.blend(1, pass)
+                        .convertShape(VectorOperators.D2F, FLOATS, 0)).reinterpretAsInts().compare(VectorOperators.NE, 0);
+                IntVector.fromArray(INTS, pixels, i).blend(color, passInts).intoArray(pixels, i);
+                if(ids != null)
+                {
+                    IntVector.fromArray(INTS, ids, i).blend(id, passInts).intoArray(ids, i);
+                }
+                written = true;
+            }
+            e0 += this.b0;
+            e1 += this.b1;
+            e2 += this.b2;
+            rowZ += this.dzdy;
+        }
+        return written;
+    }
+}
@@ -0,0 +1,194 @@
+package engine;
+
+// Object-space positions stored as parallel x/y/z arrays
+class VertexBuffer
+{
+    double[] x;
+    double[] y;
+    double[] z;
+    int size;
+
+    public VertexBuffer(int capacity)
+    {
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+    }
+    public int add(double x, double y, double z)
+    {
+        ensureCapacity(this.size + 1);
+        this.x[this.size] = x;
+        this.y[this.size] = y;
+        this.z[this.size] = z;
+        return this.size++;
+    }
+    public void ensureCapacity(int capacity)
+    {
+        if(capacity > this.x.length)
+        {
+            int newCapacity = Math.max(capacity, this.x.length * 2);
+            this.x = java.util.Arrays.copyOf(this.x, newCapacity);
+            this.y = java.util.Arrays.copyOf(this.y, newCapacity);
+            this.z = java.util.Arrays.copyOf(this.z, newCapacity);
+        }
+    }
+    public void clear()
+    {
+        this.size = 0;
+    }
+}
+
+// Clip-space positions plus the screen position and normalized depth derived from them.
+// Reused across frames; ensureCapacity only grows when the scene does.
+class ClipBuffer
+{
+    double[] x;
+    double[] y;
+    double[] z;
+    double[] w;
+    double[] screenX;
+    double[] screenY;
+    double[] depth;
+    int size;
+
+    public ClipBuffer(int capacity)
+    {
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.w = new double[capacity];
+        this.screenX = new double[capacity];
+        this.screenY = new double[capacity];
+        this.depth = new double[capacity];
+    }
+    public void ensureCapacity(int capacity)
+    {
+        if(capacity > this.x.length)
+        {
+            int newCapacity = Math.max(capacity, this.x.length * 2);
+            this.x = java.util.Arrays.copyOf(this.x, newCapacity);
+            this.y = java.util.Arrays.copyOf(this.y, newCapacity);
+            this.z = java.util.Arrays.copyOf(this.z, newCapacity);
+            this.w = java.util.Arrays.copyOf(this.w, newCapacity);
+            this.screenX = java.util.Arrays.copyOf(this.screenX, newCapacity);
+            this.screenY = java.util.Arrays.copyOf(this.screenY, newCapacity);
+            this.depth = java.util.Arrays.copyOf(this.depth, newCapacity);
+        }
+    }
+
+    // this[offset + i] = m * (src[i], 1) for every vertex of src. With Simd.ENABLED the vector
+    // kernels do all but the last few vertices, here and in project.
+    public void transform(VertexBuffer src, Mat4 m, int offset)
+    {
+        double[] M = m.m;
+        double m00 = M[0], m01 = M[1], m02 = M[2], m03 = M[3];
+        double m10 = M[4], m11 = M[5], m12 = M[6], m13 = M[7];
+        double m20 = M[8], m21 = M[9], m22 = M[10], m23 = M[11];
+        double m30 = M[12], m31 = M[13], m32 = M[14], m33 = M[15];
+        double[] sx = src.x, sy = src.y, sz = src.z;
+        double[] dx = this.x, dy = this.y, dz = this.z, dw = this.w;
+        int n = src.size;
+        for(int i = Simd.ENABLED ? VectorKernels.transform(src, m, this, offset) : 0; i < n; i++)
+        {
+            double vx = sx[i], vy = sy[i], vz = sz[i];
+            int j = offset + i;
+            dx[j] = m00 * vx + m01 * vy + m02 * vz + m03;
+            dy[j] = m10 * vx + m11 * vy + m12 * vz + m13;
+            dz[j] = m20 * vx + m21 * vy + m22 * vz + m23;
+            dw[j] = m30 * vx + m31 * vy + m32 * vz + m33;
+        }
+    }
+
+    // Screen position and [near, far] normalized depth for vertices [from, to)
+    public void project(Camera camera, double scale, int center, int from, int to)
+    {
+        double[] P = camera.perspective.m;
+        double p00 = P[0], p01 = P[1], p02 = P[2], p03 = P[3];
+        double p10 = P[4], p11 = P[5], p12 = P[6], p13 = P[7];
+        double p20 = P[8], p21 = P[9], p22 = P[10], p23 = P[11];
+        double near = camera.near;
+        double depthScale = 1 / (camera.far - camera.near);
+        double[] cx = this.x, cy = this.y, cz = this.z;
+        for(int i = Simd.ENABLED ? VectorKernels.project(this, camera, scale, center, from, to) : from; i < to; i++)
+        {
+            double vx = cx[i], vy = cy[i], vz = cz[i];
+            double px = p00 * vx + p01 * vy + p02 * vz + p03;
+            double py = p10 * vx + p11 * vy + p12 * vz + p13;
+            double pz = p20 * vx + p21 * vy + p22 * vz + p23;
+            this.screenX[i] = px / pz * scale + center;
+            this.screenY[i] = py / pz * scale + center;
+            this.depth[i] = (pz - near) * depthScale;
+        }
+    }
+}
+
+// Screen-space triangles ready for rasterization: x, y, depth of each corner interleaved
+// STRIDE doubles per triangle, plus a packed RGB color, the world-space surface of triangles
+// left to be shaded later, and the instance and mesh triangle each came from, for picking
+class TriangleBuffer
+{
+    static final int STRIDE = 9;
+    // Color of a triangle set up without lighting
+    static final int UNSHADED = -1;
+    // Unit normal and center in world space, SURFACE doubles per triangle
+    static final int SURFACE = 6;
+
+    double[] coords;
+    int[] color;
+    // Only set for UNSHADED triangles
+    double[] surface;
+    int[] instance;
+    int[] face;
+    int size;
+
+    public TriangleBuffer(int capacity)
+    {
+        this.coords = new double[capacity * STRIDE];
+        this.color = new int[capacity];
+        this.surface = new double[capacity * SURFACE];
+        this.instance = new int[capacity];
+        this.face = new int[capacity];
+    }
+    public int add(ClipBuffer clip, int i0, int i1, int i2, int rgb, int instance, int face)
+    {
+        if(this.size == this.color.length)
+        {
+            int newCapacity = Math.max(16, this.size * 2);
+            this.coords = java.util.Arrays.copyOf(this.coords, newCapacity * STRIDE);
+            this.color = java.util.Arrays.copyOf(this.color, newCapacity);
+            this.surface = java.util.Arrays.copyOf(this.surface, newCapacity * SURFACE);
+            this.instance = java.util.Arrays.copyOf(this.instance, newCapacity);
+            this.face = java.util.Arrays.copyOf(this.face, newCapacity);
+        }
+        int o = this.size * STRIDE;
+        double[] c = this.coords;
+        c[o] = clip.screenX[i0];
+        c[o + 1] = clip.screenY[i0];
+        c[o + 2] = clip.depth[i0];
+        c[o + 3] = clip.screenX[i1];
+        c[o + 4] = clip.screenY[i1];
+        c[o + 5] = clip.depth[i1];
+        c[o + 6] = clip.screenX[i2];
+        c[o + 7] = clip.screenY[i2];
+        c[o + 8] = clip.depth[i2];
+        this.color[this.size] = rgb;
+        this.instance[this.size] = instance;
+        this.face[this.size] = face;
+        return this.size++;
+    }
+    public void setSurface(int slot, double nx, double ny, double nz, double x, double y, double z)
+    {
+        int o = slot * SURFACE;
+        double[] s = this.surface;
+        s[o] = nx;
+        s[o + 1] = ny;
+        s[o + 2] = nz;
+        s[o + 3] = x;
+        s[o + 4] = y;
+        s[o + 5] = z;
+    }
+    public void clear()
+    {
+        this.size = 0;
+    }
+}
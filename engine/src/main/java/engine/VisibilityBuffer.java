@@ -0,0 +1,60 @@
+package engine;
+
+// Target of deferred shading. The raster pass writes only depth and, here, the slot in the
+// frame's TriangleBuffer of the nearest triangle at each pixel, which stands for its instance
+// and mesh triangle as in IdBuffer. resolve then colors each pixel once from the triangle in its
+// slot, lighting a triangle when the first of its pixels is reached, so the shading work follows
+// the pixels on screen rather than the triangles drawn over them.
+class VisibilityBuffer
+{
+    final int[] slots;
+    final int width;
+    final int height;
+
+    public VisibilityBuffer(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.slots = new int[width * height];
+        java.util.Arrays.fill(this.slots, IdBuffer.NONE);
+    }
+
+    // Writes the color of every covered pixel of [x0, x1) x [y0, y1) into frame, and its slot into
+    // the frame's ids when it has them, leaving the rest of frame as it was. The rectangle's slots
+    // are cleared on the way for the next frame. Rectangles may resolve in parallel: two of them can
+    // light the same triangle at once, but both store the same color.
+    public void resolve(FrameBuffer frame, TriangleBuffer triangles, Lights lights, int x0, int y0, int x1, int y1)
+    {
+        assert frame.width == this.width && frame.height == this.height;
+        int[] slots = this.slots;
+        int[] pixels = frame.pixels;
+        int[] ids = frame.ids != null ? frame.ids.ids : null;
+        int[] color = triangles.color;
+        double[] surface = triangles.surface;
+        for(int y = y0; y < y1; y++)
+        {
+            int row = y * this.width;
+            for(int i = row + x0; i < row + x1; i++)
+            {
+                int slot = slots[i];
+                if(slot == IdBuffer.NONE)
+                {
+                    continue;
+                }
+                int rgb = color[slot];
+                if(rgb == TriangleBuffer.UNSHADED)
+                {
+                    int o = slot * TriangleBuffer.SURFACE;
+                    rgb = lights.shade(surface[o], surface[o + 1], surface[o + 2], surface[o + 3], surface[o + 4], surface[o + 5]);
+                    color[slot] = rgb;
+                }
+                pixels[i] = rgb;
+                if(ids != null)
+                {
+                    ids[i] = slot;
+                }
+                slots[i] = IdBuffer.NONE;
+            }
+        }
+    }
+}
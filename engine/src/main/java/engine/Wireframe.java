@@ -0,0 +1,198 @@
+package engine;
+
+// Edges drawn straight into a FrameBuffer's pixels, without a depth test. Each edge is clipped
+// to the pixel centers of the screen with Cohen-Sutherland, so only the part on screen is
+// walked, and the ends are rounded to pixels and joined with integer Bresenham. An edge with
+// one end behind the near plane is first cut where it crosses the plane, before projecting.
+class Wireframe
+{
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private static final int TOP = 4;
+    private static final int BOTTOM = 8;
+
+    private int[] pixels;
+    private int width;
+    private int height;
+    private double maxX;
+    private double maxY;
+    private int color = 0xffffff;
+    // Screen position of the last edge cut at the near plane
+    private double nearX;
+    private double nearY;
+
+    // Only counted when FrameStats.ENABLED; read and reset with collectStats
+    private long lines;
+
+    public Wireframe()
+    {
+    }
+    public Wireframe(FrameBuffer frameBuffer)
+    {
+        setTarget(frameBuffer);
+    }
+    public void setTarget(FrameBuffer frameBuffer)
+    {
+        this.pixels = frameBuffer.pixels;
+        this.width = frameBuffer.width;
+        this.height = frameBuffer.height;
+        this.maxX = this.width - 1;
+        this.maxY = this.height - 1;
+    }
+    public void setColor(int rgb)
+    {
+        this.color = rgb;
+    }
+    // Adds the lines drawn since the last call to stats
+    public void collectStats(FrameStats stats)
+    {
+        stats.lines += this.lines;
+        this.lines = 0;
+    }
+
+    // Draws edges, pairs of vertex indices, of one instance whose vertices are in clip from base,
+    // projected by camera, scale and center as ClipBuffer.project did
+    public void drawEdges(ClipBuffer clip, Camera camera, double scale, int center, int base, int[] edges)
+    {
+        double[] sx = clip.screenX, sy = clip.screenY, depth = clip.depth;
+        for(int e = 0; e < edges.length; e += 2)
+        {
+            int i0 = base + edges[e], i1 = base + edges[e + 1];
+            // Every comparison is false for NaN, so such edges are dropped
+            double d0 = depth[i0], d1 = depth[i1];
+            if(d0 >= 0 && d1 >= 0)
+            {
+                drawLine(sx[i0], sy[i0], sx[i1], sy[i1]);
+            }
+            else if(d0 >= 0 && d1 < 0)
+            {
+                cutAtNear(clip, camera, scale, center, i0, i1);
+                drawLine(sx[i0], sy[i0], this.nearX, this.nearY);
+            }
+            else if(d0 < 0 && d1 >= 0)
+            {
+                cutAtNear(clip, camera, scale, center, i1, i0);
+                drawLine(this.nearX, this.nearY, sx[i1], sy[i1]);
+            }
+        }
+    }
+    // Projects the point where the edge from vertex front to vertex behind crosses the near plane.
+    // Depth is affine in the clip position, so the crossing is at the same fraction of both.
+    private void cutAtNear(ClipBuffer clip, Camera camera, double scale, int center, int front, int behind)
+    {
+        double t = clip.depth[front] / (clip.depth[front] - clip.depth[behind]);
+        double x = clip.x[front] + (clip.x[behind] - clip.x[front]) * t;
+        double y = clip.y[front] + (clip.y[behind] - clip.y[front]) * t;
+        double z = clip.z[front] + (clip.z[behind] - clip.z[front]) * t;
+        double[] P = camera.perspective.m;
+        double px = P[0] * x + P[1] * y + P[2] * z + P[3];
+        double py = P[4] * x + P[5] * y + P[6] * z + P[7];
+        double pz = P[8] * x + P[9] * y + P[10] * z + P[11];
+        this.nearX = px / pz * scale + center;
+        this.nearY = py / pz * scale + center;
+    }
+
+    public void drawLine(double x0, double y0, double x1, double y1)
+    {
+        int code0 = outcode(x0, y0), code1 = outcode(x1, y1);
+        while((code0 | code1) != 0)
+        {
+            if((code0 & code1) != 0)
+            {
+                return;
+            }
+            // Moves an end outside the screen onto the edge of the first side it is beyond
+            int code = code0 != 0 ? code0 : code1;
+            double x, y;
+            if((code & LEFT) != 0)
+            {
+                x = 0;
+                y = y0 + (y1 - y0) * (0 - x0) / (x1 - x0);
+            }
+            else if((code & RIGHT) != 0)
+            {
+                x = this.maxX;
+                y = y0 + (y1 - y0) * (this.maxX - x0) / (x1 - x0);
+            }
+            else if((code & TOP) != 0)
+            {
+                x = x0 + (x1 - x0) * (0 - y0) / (y1 - y0);
+                y = 0;
+            }
+            else
+            {
+                x = x0 + (x1 - x0) * (this.maxY - y0) / (y1 - y0);
+                y = this.maxY;
+            }
+            if(code == code0)
+            {
+                x0 = x;
+                y0 = y;
+                code0 = outcode(x0, y0);
+            }
+            else
+            {
+                x1 = x;
+                y1 = y;
+                code1 = outcode(x1, y1);
+            }
+        }
+        // Rounding within [0, max] stays on the screen
+        bresenham((int) (x0 + 0.5), (int) (y0 + 0.5), (int) (x1 + 0.5), (int) (y1 + 0.5));
+    }
+    private int outcode(double x, double y)
+    {
+        int code = 0;
+        if(x < 0)
+        {
+            code |= LEFT;
+        }
+        else if(x > this.maxX)
+        {
+            code |= RIGHT;
+        }
+        if(y < 0)
+        {
+            code |= TOP;
+        }
+        else if(y > this.maxY)
+        {
+            code |= BOTTOM;
+        }
+        return code;
+    }
+
+    private void bresenham(int x0, int y0, int x1, int y1)
+    {
+        if(FrameStats.ENABLED)
+        {
+            this.lines++;
+        }
+        int[] pixels = this.pixels;
+        int width = this.width;
+        int color = this.color;
+        int dx = Math.abs(x1 - x0), dy = -Math.abs(y1 - y0);
+        int stepX = x0 < x1 ? 1 : -1, stepY = (y0 < y1 ? 1 : -1) * width;
+        int i = y0 * width + x0, end = y1 * width + x1;
+        int error = dx + dy;
+        while(true)
+        {
+            pixels[i] = color;
+            if(i == end)
+            {
+                return;
+            }
+            int e2 = 2 * error;
+            if(e2 >= dy)
+            {
+                error += dy;
+                i += stepX;
+            }
+            if(e2 <= dx)
+            {
+                error += dx;
+                i += stepY;
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BvhTest
+{
+    private final Random random = new Random(7);
+    private final Mat4 rotation = new Mat4();
+    private final Mat4 scale = new Mat4();
+    private final Mat4 translation = new Mat4();
+    private final Mat4 model = new Mat4();
+
+    // Turned, scaled and placed at random within extent of the origin
+    private void place(Instance instance, double extent)
+    {
+        this.rotation.setRotateY(this.random.nextDouble() * 2 * Math.PI);
+        double s = 0.2 + this.random.nextDouble() * 2;
+        this.scale.setScale(s, s * (0.5 + this.random.nextDouble()), s);
+        this.translation.setTransform((this.random.nextDouble() * 2 - 1) * extent,
+                (this.random.nextDouble() * 2 - 1) * extent / 4, (this.random.nextDouble() * 2 - 1) * extent);
+        Mat4.mulInto(this.model, this.rotation, this.scale);
+        instance.setModel(Mat4.mulInto(this.model, this.translation, this.model));
+    }
+    private Instance[] scene(int count, double extent)
+    {
+        Instance[] instances = new Instance[count];
+        for(int i = 0; i < count; i++)
+        {
+            instances[i] = new Instance();
+            place(instances[i], extent);
+        }
+        return instances;
+    }
+    private Camera camera(double x, double z, double yaw)
+    {
+        Camera camera = new Camera(90, 1, 0.01, 150);
+        camera.setPosition(x, 1, z);
+        camera.rotateY(yaw);
+        return camera;
+    }
+
+    private static int[] linear(Frustum frustum, Bounds bounds, Instance[] instances)
+    {
+        Mat4 model = new Mat4();
+        int[] found = new int[instances.length];
+        int count = 0;
+        for(int i = 0; i < instances.length; i++)
+        {
+            if(!frustum.culls(bounds, instances[i].getModel(model)))
+            {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+    private static int[] query(Bvh index, Frustum frustum)
+    {
+        // The results array can be replaced while the query grows it
+        int count = index.queryFrustum(frustum);
+        int[] found = Arrays.copyOf(index.getResults(), count);
+        Arrays.sort(found);
+        return found;
+    }
+    private void assertSameAsLinear(Bvh index, Instance[] instances)
+    {
+        Frustum frustum = new Frustum();
+        for(int view = 0; view < 8; view++)
+        {
+            Camera camera = camera((this.random.nextDouble() * 2 - 1) * 60, (this.random.nextDouble() * 2 - 1) * 60,
+                    this.random.nextDouble() * 2 * Math.PI);
+            camera.getFrustum(frustum, 500, 250, 500, 500);
+            int[] expected = linear(frustum, index.bounds, instances);
+            assertArrayEquals(expected, query(index, frustum));
+        }
+    }
+
+    // Center and radius in world space of an instance's bounding sphere, as the index boxes it
+    private static double[] sphere(Bounds bounds, Instance instance)
+    {
+        double[] m = instance.getModel(new Mat4()).m;
+        double scale = 0;
+        for(int a = 0; a < 3; a++)
+        {
+            scale = Math.max(scale, m[a] * m[a] + m[4 + a] * m[4 + a] + m[8 + a] * m[8 + a]);
+        }
+        return new double[] {
+                m[0] * bounds.centerX + m[1] * bounds.centerY + m[2] * bounds.centerZ + m[3],
+                m[4] * bounds.centerX + m[5] * bounds.centerY + m[6] * bounds.centerZ + m[7],
+                m[8] * bounds.centerX + m[9] * bounds.centerY + m[10] * bounds.centerZ + m[11],
+                bounds.radius * Math.sqrt(scale)};
+    }
+    private static int[] linearBox(Bounds bounds, Instance[] instances, double[] lo, double[] hi)
+    {
+        int[] found = new int[instances.length];
+        int count = 0;
+        for(int i = 0; i < instances.length; i++)
+        {
+            double[] s = sphere(bounds, instances[i]);
+            boolean overlaps = true;
+            for(int a = 0; a < 3; a++)
+            {
+                overlaps &= s[a] + s[3] >= lo[a] && s[a] - s[3] <= hi[a];
+            }
+            if(overlaps)
+            {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+    private static int[] linearSphere(Bounds bounds, Instance[] instances, double x, double y, double z, double radius)
+    {
+        int[] found = new int[instances.length];
+        int count = 0;
+        for(int i = 0; i < instances.length; i++)
+        {
+            double[] s = sphere(bounds, instances[i]);
+            double dx = s[0] - x, dy = s[1] - y, dz = s[2] - z;
+            if(Math.sqrt(dx * dx + dy * dy + dz * dz) <= radius + s[3])
+            {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+    // Where the ray first enters the instance's box, or infinity. The test scenes only turn and
+    // scale along the axes, so the box's axes are the model's columns, at right angles; the ray is
+    // measured along each of them in turn.
+    private static double linearRay(Bounds bounds, Instance instance, double[] origin, double[] direction)
+    {
+        double[] m = instance.getModel(new Mat4()).m;
+        double[] center = {bounds.centerX, bounds.centerY, bounds.centerZ};
+        double[] half = {bounds.halfX, bounds.halfY, bounds.halfZ};
+        double near = 0, far = Double.POSITIVE_INFINITY;
+        for(int a = 0; a < 3; a++)
+        {
+            double cx = m[a], cy = m[4 + a], cz = m[8 + a];
+            double length2 = cx * cx + cy * cy + cz * cz;
+            double start = ((origin[0] - m[3]) * cx + (origin[1] - m[7]) * cy + (origin[2] - m[11]) * cz) / length2;
+            double speed = (direction[0] * cx + direction[1] * cy + direction[2] * cz) / length2;
+            double lo = center[a] - half[a], hi = center[a] + half[a];
+            if(Math.abs(speed) < 1e-12)
+            {
+                if(start < lo || start > hi)
+                {
+                    return Double.POSITIVE_INFINITY;
+                }
+                continue;
+            }
+            double t0 = (lo - start) / speed, t1 = (hi - start) / speed;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+    private static int[] sorted(Bvh index, int count)
+    {
+        int[] found = Arrays.copyOf(index.getResults(), count);
+        Arrays.sort(found);
+        return found;
+    }
+    private double coordinate(double extent)
+    {
+        return (this.random.nextDouble() * 2 - 1) * extent;
+    }
+    // Boxes, spheres and rays of every size, from a point to the whole scene, checked against a
+    // scan of every instance
+    private void assertRegionsSameAsLinear(Bvh index, Instance[] instances)
+    {
+        Bounds bounds = index.bounds;
+        for(int n = 0; n < 40; n++)
+        {
+            double size = n % 10 == 0 ? 0 : n % 10 == 1 ? 300 : this.random.nextDouble() * 40;
+            double[] lo = {coordinate(110), coordinate(30), coordinate(110)};
+            double[] hi = {lo[0] + size * this.random.nextDouble(), lo[1] + size * this.random.nextDouble(),
+                    lo[2] + size * this.random.nextDouble()};
+            int count = index.queryBox(lo[0], lo[1], lo[2], hi[0], hi[1], hi[2]);
+            assertArrayEquals(linearBox(bounds, instances, lo, hi), sorted(index, count));
+
+            double x = coordinate(110), y = coordinate(30), z = coordinate(110);
+            count = index.querySphere(x, y, z, size);
+            assertArrayEquals(linearSphere(bounds, instances, x, y, z, size), sorted(index, count));
+        }
+        for(int n = 0; n < 60; n++)
+        {
+            double[] origin = {coordinate(110), coordinate(30), coordinate(110)};
+            double[] direction = {this.random.nextGaussian(), this.random.nextGaussian() * 0.2, this.random.nextGaussian()};
+            // Along the axes and level, where the slab tests divide by zero
+            if(n % 3 == 0)
+            {
+                direction[1] = 0;
+                direction[n % 2 == 0 ? 0 : 2] = 0;
+            }
+            double maxDistance = n % 2 == 0 ? Double.POSITIVE_INFINITY : this.random.nextDouble() * 60;
+            double best = maxDistance;
+            for(Instance instance : instances)
+            {
+                best = Math.min(best, linearRay(bounds, instance, origin, direction));
+            }
+            int hit = index.raycast(origin[0], origin[1], origin[2], direction[0], direction[1], direction[2], maxDistance);
+            if(best == maxDistance)
+            {
+                assertEquals(-1, hit);
+            }
+            else
+            {
+                // Another instance may be hit at the same distance, as when the ray starts inside two
+                assertEquals(best, index.getHitDistance(), 1e-9 * (1 + best));
+                assertEquals(best, linearRay(bounds, instances[hit], origin, direction), 1e-9 * (1 + best));
+            }
+        }
+    }
+
+    @Test
+    void queriesMatchLinearScan()
+    {
+        Instance[] instances = scene(5000, 100);
+        Bvh index = new Bvh(Mesh.CUBE.bounds, instances, instances.length);
+        assertSameAsLinear(index, instances);
+        assertRegionsSameAsLinear(index, instances);
+    }
+    @Test
+    void queriesMatchLinearScanAfterUpdates()
+    {
+        Instance[] instances = scene(5000, 100);
+        Bvh index = new Bvh(Mesh.CUBE.bounds, instances, instances.length);
+        for(int round = 0; round < 20; round++)
+        {
+            // Mostly small moves that stay in their leaf, some across the scene
+            for(int n = 0; n < 200; n++)
+            {
+                int i = this.random.nextInt(instances.length);
+                if(this.random.nextInt(4) == 0)
+                {
+                    place(instances[i], 100);
+                }
+                else
+                {
+                    instances[i].m03 += (float) this.random.nextGaussian() * 0.3f;
+                    instances[i].m23 += (float) this.random.nextGaussian() * 0.3f;
+                }
+                index.update(i);
+            }
+            assertSameAsLinear(index, instances);
+            assertRegionsSameAsLinear(index, instances);
+        }
+        index.refit();
+        assertSameAsLinear(index, instances);
+        assertRegionsSameAsLinear(index, instances);
+        index.build();
+        assertSameAsLinear(index, instances);
+        assertRegionsSameAsLinear(index, instances);
+    }
+    @Test
+    void frustumQueryFindsEverythingInView()
+    {
+        Instance[] instances = scene(300, 5);
+        Bvh index = new Bvh(Mesh.CUBE.bounds, instances, instances.length);
+        Frustum frustum = new Frustum();
+        Camera camera = camera(0, 60, 0);
+        camera.getFrustum(frustum, 500, 250, 500, 500);
+        assertEquals(instances.length, linear(frustum, index.bounds, instances).length);
+        assertArrayEquals(linear(frustum, index.bounds, instances), query(index, frustum));
+    }
+    @Test
+    void worksForFewInstances()
+    {
+        Frustum frustum = new Frustum();
+        camera(0, 20, 0).getFrustum(frustum, 500, 250, 500, 500);
+        for(int count = 0; count <= Bvh.LEAF_SIZE + 1; count++)
+        {
+            Instance[] instances = scene(count, 5);
+            Bvh index = new Bvh(Mesh.CUBE.bounds, instances, count);
+            assertEquals(count, linear(frustum, index.bounds, instances).length);
+            assertArrayEquals(linear(frustum, index.bounds, instances), query(index, frustum));
+        }
+    }
+}
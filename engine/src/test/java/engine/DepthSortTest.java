@@ -0,0 +1,137 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DepthSortTest
+{
+    private final Random random = new Random(3);
+
+    // Visible instances of one frame, in increasing index order as the culling leaves them, and
+    // the key of each instance
+    private int[] visible(int instances, double share)
+    {
+        int[] order = new int[instances];
+        int count = 0;
+        for(int i = 0; i < instances; i++)
+        {
+            if(this.random.nextDouble() < share)
+            {
+                order[count++] = i;
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+    // Sorts order by the keys of its instances through sort, and checks it against Arrays.sort
+    // of the same keys with the instance as the tie break
+    private static void sortAndCheck(DepthSort sort, int[] order, int[] keyOf, int instances)
+    {
+        int count = order.length;
+        long[] expected = new long[count];
+        int[] keys = new int[count];
+        for(int k = 0; k < count; k++)
+        {
+            keys[k] = keyOf[order[k]];
+            expected[k] = (long) keys[k] << 32 | order[k];
+        }
+        Arrays.sort(expected);
+        int[] wanted = new int[count];
+        for(int k = 0; k < count; k++)
+        {
+            wanted[k] = (int) expected[k];
+        }
+        // Spare room past count, as the renderer's arrays have
+        int[] sorted = Arrays.copyOf(order, count + 16);
+        sort.sort(sorted, keys, count, instances);
+        assertArrayEquals(wanted, Arrays.copyOf(sorted, count));
+    }
+    private int[] randomKeys(int instances, int range)
+    {
+        int[] keys = new int[instances];
+        for(int i = 0; i < instances; i++)
+        {
+            keys[i] = this.random.nextInt(range);
+        }
+        return keys;
+    }
+
+    @Test
+    void sortsRandomKeys()
+    {
+        for(int instances : new int[] {0, 1, 2, 17, 1000, 100000})
+        {
+            int[] keys = randomKeys(instances, DepthSort.MAX_KEY + 1);
+            sortAndCheck(new DepthSort(), visible(instances, 1), keys, instances);
+            sortAndCheck(new DepthSort(), visible(instances, 0.3), keys, instances);
+        }
+    }
+    @Test
+    void keepsInstanceOrderAmongEqualKeys()
+    {
+        int instances = 10000;
+        sortAndCheck(new DepthSort(), visible(instances, 0.8), randomKeys(instances, 4), instances);
+        sortAndCheck(new DepthSort(), visible(instances, 0.8), new int[instances], instances);
+        int[] extremes = randomKeys(instances, 2);
+        for(int i = 0; i < instances; i++)
+        {
+            extremes[i] *= DepthSort.MAX_KEY;
+        }
+        sortAndCheck(new DepthSort(), visible(instances, 1), extremes, instances);
+    }
+    @Test
+    void sortsPresortedAndReversedKeys()
+    {
+        int instances = 5000;
+        int[] ascending = new int[instances], descending = new int[instances];
+        for(int i = 0; i < instances; i++)
+        {
+            ascending[i] = i * DepthSort.MAX_KEY / instances;
+            descending[i] = DepthSort.MAX_KEY - ascending[i];
+        }
+        DepthSort sort = new DepthSort();
+        sortAndCheck(sort, visible(instances, 1), ascending, instances);
+        sortAndCheck(sort, visible(instances, 1), ascending, instances);
+        sortAndCheck(sort, visible(instances, 1), descending, instances);
+        sortAndCheck(sort, visible(instances, 1), descending, instances);
+        sortAndCheck(sort, visible(instances, 1), ascending, instances);
+    }
+
+    // Frame after frame on one sorter, as the renderer uses it: keys drifting a little, some
+    // instances leaving and entering the view, now and then a jump that defeats the last order
+    @Test
+    void reusesTheLastOrderAcrossFrames()
+    {
+        int instances = 20000;
+        int[] keys = randomKeys(instances, DepthSort.MAX_KEY + 1);
+        DepthSort sort = new DepthSort();
+        for(int frame = 0; frame < 60; frame++)
+        {
+            if(frame % 20 == 10)
+            {
+                keys = randomKeys(instances, DepthSort.MAX_KEY + 1);
+            }
+            else
+            {
+                for(int i = 0; i < instances; i++)
+                {
+                    keys[i] = Math.min(Math.max(keys[i] + this.random.nextInt(41) - 20, 0), DepthSort.MAX_KEY);
+                }
+            }
+            sortAndCheck(sort, visible(instances, frame % 7 == 0 ? 1 : 0.9), keys, instances);
+        }
+    }
+    @Test
+    void growsWithTheScene()
+    {
+        DepthSort sort = new DepthSort();
+        for(int instances : new int[] {10, 1000, 500, 50000, 50000, 20})
+        {
+            int[] keys = randomKeys(instances, 300);
+            sortAndCheck(sort, visible(instances, 0.7), keys, instances);
+            sortAndCheck(sort, visible(instances, 0.7), keys, instances);
+        }
+    }
+}
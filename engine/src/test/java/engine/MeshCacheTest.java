@@ -0,0 +1,128 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MeshCacheTest
+{
+    private static final String PYRAMID = "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 0 0 1.5\n"
+            + "f 1 3 2\nf 1 2 4\nf 2 3 4\nf 3 1 4\n";
+
+    @TempDir
+    Path dir;
+
+    private static void assertSameMesh(Mesh expected, Mesh actual)
+    {
+        assertEquals(expected.vertices.size, actual.vertices.size);
+        int n = expected.vertices.size;
+        assertArrayEquals(java.util.Arrays.copyOf(expected.vertices.x, n), java.util.Arrays.copyOf(actual.vertices.x, n));
+        assertArrayEquals(java.util.Arrays.copyOf(expected.vertices.y, n), java.util.Arrays.copyOf(actual.vertices.y, n));
+        assertArrayEquals(java.util.Arrays.copyOf(expected.vertices.z, n), java.util.Arrays.copyOf(actual.vertices.z, n));
+        assertArrayEquals(expected.indices, actual.indices);
+        assertArrayEquals(expected.faceNormals, actual.faceNormals);
+        Bounds a = expected.bounds, b = actual.bounds;
+        assertArrayEquals(new double[] {a.centerX, a.centerY, a.centerZ, a.halfX, a.halfY, a.halfZ, a.radius},
+                new double[] {b.centerX, b.centerY, b.centerZ, b.halfX, b.halfY, b.halfZ, b.radius});
+    }
+    private Path cacheOf(Mesh mesh) throws IOException
+    {
+        Path cache = this.dir.resolve("mesh.obj.mesh");
+        MeshCache.write(cache, mesh, 1234, 5678);
+        return cache;
+    }
+
+    @Test
+    void readsBackWhatItWrote() throws IOException
+    {
+        // Odd counts, so every block but the first ends off the alignment
+        VertexBuffer vertices = new VertexBuffer(7);
+        java.util.Random random = new java.util.Random(1);
+        for(int i = 0; i < 7; i++)
+        {
+            vertices.add(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        }
+        Mesh mesh = new Mesh(vertices, new int[] {0, 1, 2, 2, 3, 4, 4, 5, 6, 6, 0, 3, 1, 5, 2});
+        Path cache = cacheOf(mesh);
+        assertSameMesh(mesh, MeshCache.read(cache, 1234, 5678));
+    }
+    @Test
+    void rejectsAStaleSource() throws IOException
+    {
+        Path cache = cacheOf(Mesh.CUBE);
+        assertNotNull(MeshCache.read(cache, 1234, 5678));
+        assertNull(MeshCache.read(cache, 1235, 5678));
+        assertNull(MeshCache.read(cache, 1234, 5679));
+    }
+    @Test
+    void rejectsACorruptedBody() throws IOException
+    {
+        Path cache = cacheOf(Mesh.CUBE);
+        long size = Files.size(cache);
+        for(long offset : new long[] {MeshCache.HEADER_SIZE, size / 2, size - 1})
+        {
+            flip(cache, offset);
+            assertNull(MeshCache.read(cache, 1234, 5678), "flipped byte at " + offset);
+            flip(cache, offset);
+        }
+        assertNotNull(MeshCache.read(cache, 1234, 5678));
+    }
+    @Test
+    void rejectsOtherVersionsAndTruncatedFiles() throws IOException
+    {
+        Path cache = cacheOf(Mesh.CUBE);
+        flip(cache, 4);
+        assertNull(MeshCache.read(cache, 1234, 5678));
+        flip(cache, 4);
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE))
+        {
+            channel.truncate(channel.size() - 4);
+        }
+        assertNull(MeshCache.read(cache, 1234, 5678));
+        Files.write(cache, new byte[16]);
+        assertNull(MeshCache.read(cache, 1234, 5678));
+    }
+    private static void flip(Path file, long offset) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0x10)).rewind();
+            channel.write(b, offset);
+        }
+    }
+
+    @Test
+    void loadUsesTheCacheUntilTheSourceChanges() throws IOException
+    {
+        Path source = this.dir.resolve("pyramid.obj");
+        Files.writeString(source, PYRAMID);
+        Mesh parsed = MeshCache.load(source);
+        assertTrue(Files.isRegularFile(MeshCache.cachePath(source)));
+        assertSameMesh(parsed, MeshCache.load(source));
+
+        // Same size and time, other contents: only the cache can give back the old mesh
+        FileTime time = Files.getLastModifiedTime(source);
+        Files.writeString(source, PYRAMID.replace("1.5", "2.5"));
+        Files.setLastModifiedTime(source, time);
+        assertSameMesh(parsed, MeshCache.load(source));
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(time.toMillis() + 2000));
+        Mesh changed = MeshCache.load(source);
+        assertEquals(2.5, changed.vertices.z[3]);
+        assertSameMesh(changed, MeshCache.load(source));
+    }
+}
@@ -0,0 +1,134 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class MeshSimplifierTest
+{
+    // Closed, welded, bumpy sphere: a vertex at each pole and rings of slices vertices between.
+    // Wound like Mesh.CUBE, clockwise seen from outside, so the face normals point in.
+    static Mesh sphere(int stacks, int slices)
+    {
+        VertexBuffer vertices = new VertexBuffer(2 + (stacks - 1) * slices);
+        vertices.add(0, 1, 0);
+        for(int i = 1; i < stacks; i++)
+        {
+            double theta = Math.PI * i / stacks;
+            for(int j = 0; j < slices; j++)
+            {
+                double phi = 2 * Math.PI * j / slices;
+                double r = 1 + 0.1 * Math.sin(3 * theta) * Math.cos(2 * phi);
+                vertices.add(r * Math.sin(theta) * Math.cos(phi), r * Math.cos(theta), r * Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        int south = vertices.add(0, -1, 0);
+        int[] indices = new int[6 * slices * (stacks - 1)];
+        int n = 0;
+        for(int j = 0; j < slices; j++)
+        {
+            int j1 = (j + 1) % slices;
+            indices[n++] = 0;
+            indices[n++] = 1 + j;
+            indices[n++] = 1 + j1;
+            for(int i = 1; i < stacks - 1; i++)
+            {
+                int a = 1 + (i - 1) * slices + j, b = 1 + (i - 1) * slices + j1;
+                int c = a + slices, d = b + slices;
+                indices[n++] = a;
+                indices[n++] = c;
+                indices[n++] = d;
+                indices[n++] = a;
+                indices[n++] = d;
+                indices[n++] = b;
+            }
+            int last = 1 + (stacks - 2) * slices;
+            indices[n++] = south;
+            indices[n++] = last + j1;
+            indices[n++] = last + j;
+        }
+        return new Mesh(vertices, indices);
+    }
+
+    // Whether every edge has exactly one triangle on each side, wound the opposite way, and the
+    // surface has the Euler characteristic of a sphere
+    private static void assertClosed(Mesh mesh)
+    {
+        Map<Long, Integer> directed = new HashMap<>();
+        for(int t = 0; t < mesh.triangleCount; t++)
+        {
+            for(int k = 0; k < 3; k++)
+            {
+                long a = mesh.indices[3 * t + k], b = mesh.indices[3 * t + (k + 1) % 3];
+                assertTrue(directed.put(a << 32 | b, t) == null, "edge used twice the same way");
+            }
+        }
+        for(long edge : directed.keySet())
+        {
+            long reverse = (edge & 0xffffffffL) << 32 | edge >>> 32;
+            assertTrue(directed.containsKey(reverse), "open edge");
+        }
+        int edges = directed.size() / 2;
+        assertEquals(2, mesh.vertices.size - edges + mesh.triangleCount);
+    }
+    // Sign of the face normal against the direction from the center, which on a sphere around
+    // the origin tells which way the triangle is wound
+    private static void assertFacing(Mesh mesh, double sign)
+    {
+        double[] x = mesh.vertices.x, y = mesh.vertices.y, z = mesh.vertices.z;
+        for(int t = 0; t < mesh.triangleCount; t++)
+        {
+            int i0 = mesh.indices[3 * t], i1 = mesh.indices[3 * t + 1], i2 = mesh.indices[3 * t + 2];
+            double cx = x[i0] + x[i1] + x[i2], cy = y[i0] + y[i1] + y[i2], cz = z[i0] + z[i1] + z[i2];
+            double dot = mesh.faceNormals[3 * t] * cx + mesh.faceNormals[3 * t + 1] * cy + mesh.faceNormals[3 * t + 2] * cz;
+            assertTrue(dot * sign > 0, "triangle " + t + " turned over");
+        }
+    }
+
+    @Test
+    void reachesEachTarget()
+    {
+        Mesh mesh = sphere(40, 60);
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        for(int target : new int[] {mesh.triangleCount / 2, 1000, 250, 60})
+        {
+            simplifier.run(target);
+            Mesh level = simplifier.toMesh();
+            // A collapse removes the two triangles on its edge
+            assertTrue(level.triangleCount <= target && level.triangleCount >= target - 2,
+                    level.triangleCount + " triangles for a target of " + target);
+            assertEquals(level.triangleCount, simplifier.getTriangleCount());
+        }
+    }
+    @Test
+    void keepsAClosedMeshClosedAndFacingTheSameWay()
+    {
+        Mesh mesh = sphere(40, 60);
+        assertClosed(mesh);
+        assertFacing(mesh, -1);
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        for(int target = mesh.triangleCount / 2; target >= 20; target /= 2)
+        {
+            simplifier.run(target);
+            Mesh level = simplifier.toMesh();
+            assertClosed(level);
+            assertFacing(level, -1);
+        }
+    }
+    @Test
+    void staysNearTheSurface()
+    {
+        MeshSimplifier simplifier = new MeshSimplifier(sphere(40, 60));
+        simplifier.run(500);
+        Mesh level = simplifier.toMesh();
+        for(int i = 0; i < level.vertices.size; i++)
+        {
+            double r = Math.sqrt(level.vertices.x[i] * level.vertices.x[i] + level.vertices.y[i] * level.vertices.y[i]
+                    + level.vertices.z[i] * level.vertices.z[i]);
+            assertTrue(r > 0.85 && r < 1.15, "vertex " + i + " at radius " + r);
+        }
+    }
+}
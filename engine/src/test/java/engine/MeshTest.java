@@ -0,0 +1,161 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class MeshTest
+{
+    private final Camera camera = new Camera(90, 1, 0.01, 100);
+    private final NormalMatrix normals = new NormalMatrix();
+
+    private static Instance scaled(double x, double y, double z)
+    {
+        Mat4 scale = new Mat4();
+        scale.setScale(x, y, z);
+        return new Instance().setModel(scale);
+    }
+    // The cube's triangles set up for one instance, deferred so their world normals are kept
+    private TriangleBuffer setup(Instance instance)
+    {
+        Mat4 mvp = Mat4.mulInto(new Mat4(), this.camera.getViewProjection(), instance.getModel(new Mat4()));
+        ClipBuffer clip = new ClipBuffer(Mesh.CUBE.vertices.size);
+        clip.size = Mesh.CUBE.vertices.size;
+        clip.transform(Mesh.CUBE.vertices, mvp, 0);
+        clip.project(this.camera, 500, 250, 0, clip.size);
+        TriangleBuffer out = new TriangleBuffer(Mesh.CUBE.triangleCount);
+        Mesh.CUBE.setupTriangles(this.camera, clip, 0, 0, instance, this.normals, Lights.standard(), true, out);
+        return out;
+    }
+
+    @Test
+    void singularModelsAddNothing()
+    {
+        assertEquals(0, setup(scaled(1, 0, 1)).size);
+        assertEquals(0, setup(scaled(0, 0, 0)).size);
+        // Its z axis laid onto its x axis
+        Mat4 sheared = new Mat4();
+        sheared.set(0, 2, 1);
+        sheared.set(2, 2, 0);
+        assertEquals(0, setup(new Instance().setModel(sheared)).size);
+    }
+    @Test
+    void facesTowardTheCameraAreKeptWithUnitNormals()
+    {
+        // The camera sits at -position, here (0, 0, -10), and sees only the cube's z = -1 face
+        double[][] scales = {{1, 1, 1}, {2, 2, 2}, {1, 0.3, 3}, {-1, 1, 1}, {1, -0.5, 2}};
+        for(double[] s : scales)
+        {
+            TriangleBuffer out = setup(scaled(s[0], s[1], s[2]));
+            assertEquals(2, out.size);
+            for(int k = 0; k < out.size; k++)
+            {
+                int o = k * TriangleBuffer.SURFACE;
+                double nx = out.surface[o], ny = out.surface[o + 1], nz = out.surface[o + 2];
+                assertEquals(1, nx * nx + ny * ny + nz * nz, 1e-9);
+                assertTrue(nz < -1 + 1e-9);
+            }
+        }
+    }
+
+    // Edges as sorted (lower << 32 | higher) keys, checked to be each side of some triangle
+    private static long[] keys(Mesh mesh, int[] edges)
+    {
+        long[] keys = new long[edges.length / 2];
+        for(int e = 0; e < keys.length; e++)
+        {
+            int a = edges[2 * e], b = edges[2 * e + 1];
+            keys[e] = (long) Math.min(a, b) << 32 | Math.max(a, b);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+    // The triangles along each edge, gathered in a map, and the edges worked out from them
+    private static void assertEdgesAsReference(Mesh mesh)
+    {
+        Map<Long, List<Integer>> triangles = new HashMap<>();
+        for(int t = 0; t < mesh.indices.length; t += 3)
+        {
+            for(int k = 0; k < 3; k++)
+            {
+                int a = mesh.indices[t + k], b = mesh.indices[t + (k + 1) % 3];
+                triangles.computeIfAbsent((long) Math.min(a, b) << 32 | Math.max(a, b), key -> new ArrayList<>()).add(t);
+            }
+        }
+        List<Long> all = new ArrayList<>(), outline = new ArrayList<>();
+        double[] n = mesh.faceNormals;
+        for(Map.Entry<Long, List<Integer>> edge : triangles.entrySet())
+        {
+            all.add(edge.getKey());
+            List<Integer> t = edge.getValue();
+            if(t.size() != 2 || n[t.get(0)] * n[t.get(1)] + n[t.get(0) + 1] * n[t.get(1) + 1]
+                    + n[t.get(0) + 2] * n[t.get(1) + 2] <= 1 - 1e-9)
+            {
+                outline.add(edge.getKey());
+            }
+        }
+        assertArrayEquals(all.stream().mapToLong(Long::longValue).sorted().toArray(), keys(mesh, mesh.edges(true)));
+        assertArrayEquals(outline.stream().mapToLong(Long::longValue).sorted().toArray(), keys(mesh, mesh.edges(false)));
+    }
+    // A flat n x n grid of quads split into two triangles each, with one corner raised so the
+    // quads there fold, and one extra triangle hung off an inner edge
+    private static Mesh grid(int n)
+    {
+        VertexBuffer vertices = new VertexBuffer((n + 1) * (n + 1) + 1);
+        for(int i = 0; i <= n; i++)
+        {
+            for(int j = 0; j <= n; j++)
+            {
+                vertices.add(j, i == 0 && j == 0 ? 0.5 : 0, i);
+            }
+        }
+        int fin = vertices.add(1, 1, 1);
+        int[] indices = new int[6 * n * n + 3];
+        int k = 0;
+        for(int i = 0; i < n; i++)
+        {
+            for(int j = 0; j < n; j++)
+            {
+                int a = i * (n + 1) + j, b = a + 1, c = a + n + 1, d = c + 1;
+                indices[k++] = a;
+                indices[k++] = b;
+                indices[k++] = d;
+                indices[k++] = a;
+                indices[k++] = d;
+                indices[k++] = c;
+            }
+        }
+        indices[k++] = n + 2;
+        indices[k++] = 2 * n + 3;
+        indices[k] = fin;
+        return new Mesh(vertices, indices);
+    }
+
+    @Test
+    void cubeOutlineLeavesOutFaceDiagonals()
+    {
+        assertEquals(18, Mesh.CUBE.edges(true).length / 2);
+        assertEquals(12, Mesh.CUBE.edges(false).length / 2);
+        assertEdgesAsReference(Mesh.CUBE);
+    }
+    @Test
+    void edgesMatchReference()
+    {
+        Mesh sphere = MeshSimplifierTest.sphere(40, 60);
+        assertEquals(sphere.triangleCount * 3 / 2, sphere.edges(true).length / 2);
+        assertEdgesAsReference(sphere);
+        Mesh grid = grid(12);
+        // The border, the diagonal and two inner sides of the folded quad, and the extra triangle
+        // with the edge it shares with two others
+        assertEquals(4 * 12 + 3 + 3, grid.edges(false).length / 2);
+        assertEdgesAsReference(grid);
+        assertEdgesAsReference(new Mesh(new VertexBuffer(0), new int[0]));
+    }
+}
@@ -0,0 +1,162 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ObjLoaderTest
+{
+    @TempDir
+    Path dir;
+
+    private Mesh load(String text) throws IOException
+    {
+        Path file = this.dir.resolve("test.obj");
+        Files.writeString(file, text);
+        return ObjLoader.load(file);
+    }
+    private String error(String text)
+    {
+        return assertThrows(IOException.class, () -> load(text)).getMessage();
+    }
+
+    @Test
+    void readsPositionsAndTriangles() throws IOException
+    {
+        Mesh mesh = load("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n");
+        assertEquals(3, mesh.vertices.size);
+        assertEquals(1, mesh.vertices.x[1]);
+        assertEquals(1, mesh.vertices.y[2]);
+        assertArrayEquals(new int[] {0, 1, 2}, mesh.indices);
+    }
+    @Test
+    void splitsPolygonsIntoFans() throws IOException
+    {
+        Mesh mesh = load("v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nv -1 1 0\nf 1 2 3 4 5\n");
+        assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3, 0, 3, 4}, mesh.indices);
+    }
+    @Test
+    void countsNegativeIndicesBackFromTheLastVertex() throws IOException
+    {
+        Mesh mesh = load("v 0 0 0\nv 1 0 0\nv 0 1 0\nf -3 -2 -1\nv 0 0 1\nf -1 -2 -3\n");
+        assertArrayEquals(new int[] {0, 1, 2, 3, 2, 1}, mesh.indices);
+    }
+    @Test
+    void skipsTextureAndNormalIndices() throws IOException
+    {
+        Mesh mesh = load("v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvn 0 0 1\n"
+                + "f 1/1/1 2/1/1 3/1/1\nf 1//1 2//1 3//1\nf 3/1 2/1 1/1\n");
+        assertArrayEquals(new int[] {0, 1, 2, 0, 1, 2, 2, 1, 0}, mesh.indices);
+        assertEquals(3, mesh.vertices.size);
+    }
+    @Test
+    void parsesSignsFractionsAndExponents() throws IOException
+    {
+        Mesh mesh = load("v -1.5 +2.25 .5\nv 1e3 -2.5E-2 6.02e+23\nv 0.000001 123456789012345678901 1e-300\nf 1 2 3\n");
+        VertexBuffer v = mesh.vertices;
+        assertEquals(-1.5, v.x[0]);
+        assertEquals(2.25, v.y[0]);
+        assertEquals(0.5, v.z[0]);
+        assertEquals(1000, v.x[1]);
+        assertEquals(-0.025, v.y[1]);
+        assertEquals(6.02e23, v.z[1]);
+        assertEquals(1e-6, v.x[2]);
+        assertEquals(123456789012345678901.0, v.y[2], 1e5);
+        assertEquals(1e-300, v.z[2]);
+    }
+    @Test
+    void acceptsCrLfCommentsAndOtherStatements() throws IOException
+    {
+        Mesh mesh = load("# header\r\nmtllib a.mtl\r\no thing\r\nv 0 0 0\r\nv 1 0 0 # x\r\n\r\n"
+                + "  v 0 1 0\r\ng group\r\nusemtl m\r\ns off\r\nf 1 2 3\r\n");
+        assertEquals(3, mesh.vertices.size);
+        assertEquals(1, mesh.vertices.y[2]);
+        assertArrayEquals(new int[] {0, 1, 2}, mesh.indices);
+    }
+    @Test
+    void reportsTheLineOfAnError()
+    {
+        assertEquals("OBJ line 4: face with fewer than three corners",
+                error("v 0 0 0\nv 1 0 0\n\nf 1 2\n"));
+        assertEquals("OBJ line 3: vertex index out of range",
+                error("v 0 0 0\r\nv 1 0 0\r\nf 1 2 3\r\n"));
+        assertEquals("OBJ line 2: vertex index out of range",
+                error("v 0 0 0\nf 0 1 1\n"));
+        assertEquals("OBJ line 2: expected a number",
+                error("v 0 0 0\nv 1 x 0\n"));
+        assertEquals("OBJ line 1: malformed exponent",
+                error("v 1e 0 0\n"));
+        assertEquals("OBJ line 4: expected a vertex index",
+                error("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 a\n"));
+    }
+    @Test
+    void rejectsFilesWithoutFaces()
+    {
+        assertThrows(IOException.class, () -> load("v 0 0 0\n"));
+    }
+
+    // A height field of 1000 x 500 quads, two triangles each, loaded once. Prints the load time
+    // and the peak heap the JVM saw while loading, summed over the heap pools.
+    @Test
+    void loadsAMillionTriangles() throws IOException
+    {
+        int columns = 1000, rows = 500;
+        Path file = this.dir.resolve("grid.obj");
+        try(BufferedWriter out = Files.newBufferedWriter(file))
+        {
+            for(int y = 0; y <= rows; y++)
+            {
+                for(int x = 0; x <= columns; x++)
+                {
+                    out.write("v " + x * 0.01 + " " + Math.sin(x * 0.1) * Math.cos(y * 0.1) + " " + y * 0.01 + "\n");
+                }
+            }
+            for(int y = 0; y < rows; y++)
+            {
+                for(int x = 0; x < columns; x++)
+                {
+                    int i = y * (columns + 1) + x + 1;
+                    out.write("f " + i + " " + (i + 1) + " " + (i + columns + 2) + " " + (i + columns + 1) + "\n");
+                }
+            }
+        }
+
+        System.gc();
+        long before = heapUsed();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        Mesh mesh = ObjLoader.load(file);
+        long elapsed = System.nanoTime() - start;
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if(pool.getType() == MemoryType.HEAP)
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        assertEquals((columns + 1) * (rows + 1), mesh.vertices.size);
+        assertEquals(columns * rows * 2, mesh.triangleCount);
+        assertEquals(columns * rows * 6, mesh.indices.length);
+        System.out.printf("ObjLoader: %d triangles from %d MB in %.1f ms, peak heap %d MB (%d MB before)%n",
+                mesh.triangleCount, Files.size(file) >> 20, elapsed / 1e6, peak >> 20, before >> 20);
+    }
+    private static long heapUsed()
+    {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}